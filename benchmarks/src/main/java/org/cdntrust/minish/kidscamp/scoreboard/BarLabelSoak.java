@@ -0,0 +1,115 @@
+package org.cdntrust.minish.kidscamp.scoreboard;
+
+import javafx.application.Platform;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.text.Font;
+import javafx.stage.Stage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Soak check for {@link BarLabelManager}: makes lots of score changes to a bar chart on screen, now and then
+ * reordering the bars (which replaces their nodes, as a roster edit does), and reports the number of labels, the
+ * number of label nodes in the scene and the heap after a GC as it goes. The counts must stay at one per team and
+ * the heap should stay flat. Needs a display:
+ * <pre>
+ * java -cp target/benchmarks.jar org.cdntrust.minish.kidscamp.scoreboard.BarLabelSoak [changes] [teams]
+ * </pre>
+ * In this package rather than with the other benchmarks, to reach the label manager's package-private count.
+ * Exits with status 1 if there are ever more labels than teams.
+ */
+public class BarLabelSoak {
+
+    private static final int CHANGES_PER_PULSE = 100;
+    private static final int SAMPLES = 10;
+    private static final int REORDER_EVERY = 1000;
+
+    public static void main(String[] args) throws Exception {
+        int changes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int teamCount = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+
+        BarChart<String, Number> chart = new BarChart<>(new CategoryAxis(), new NumberAxis());
+        XYChart.Series<String, Number> series = new XYChart.Series<>();
+        List<XYChart.Data<String, Number>> bars = new ArrayList<>();
+        BarLabelManager labelManager = new BarLabelManager(new SimpleObjectProperty<>(Font.font(20)), new SimpleDoubleProperty(1));
+        onFxThread(() -> {
+            chart.setAnimated(false);
+            chart.getData().add(series);
+            for (int teamId = 0; teamId < teamCount; teamId++) {
+                XYChart.Data<String, Number> data = new XYChart.Data<>("Team " + teamId, 0);
+                bars.add(data);
+                series.getData().add(data);
+                labelManager.attach(teamId, data);
+            }
+            Stage stage = new Stage();
+            stage.setScene(new Scene(chart, 800, 600));
+            stage.show();
+        });
+
+        Random random = new Random(1);
+        long[] scores = new long[teamCount];
+        AtomicInteger labels = new AtomicInteger();
+        AtomicInteger labelNodes = new AtomicInteger();
+        boolean leaked = false;
+        System.out.println(String.format("%10s %8s %12s %12s", "changes", "labels", "label nodes", "heap (KB)"));
+        for (int done = 0; done < changes; ) {
+            int upTo = Math.min(changes, done + changes / SAMPLES);
+            for (; done < upTo; done += CHANGES_PER_PULSE) {
+                int from = done;
+                onFxThread(() -> {
+                    for (int change = from; change < from + CHANGES_PER_PULSE; change++) {
+                        int teamId = random.nextInt(teamCount);
+                        scores[teamId] += 1 + random.nextInt(10);
+                        bars.get(teamId).setYValue(scores[teamId]);
+                        labelManager.setScore(teamId, scores[teamId]);
+                        if (change % REORDER_EVERY == 0) {
+                            List<XYChart.Data<String, Number>> reordered = new ArrayList<>(bars);
+                            Collections.shuffle(reordered, random);
+                            series.getData().setAll(reordered);
+                        }
+                    }
+                });
+            }
+            onFxThread(() -> {
+                labels.set(labelManager.labelCount());
+                labelNodes.set(chart.lookupAll(".outline").size());
+            });
+            System.gc();
+            Runtime runtime = Runtime.getRuntime();
+            long heapKb = (runtime.totalMemory() - runtime.freeMemory()) / 1024;
+            System.out.println(String.format("%10d %8d %12d %12d", done, labels.get(), labelNodes.get(), heapKb));
+            if (labels.get() > teamCount || labelNodes.get() > teamCount) leaked = true;
+        }
+
+        Platform.exit();
+        System.out.println(leaked ? "FAILED: more labels than teams" : "PASSED: one label per team throughout");
+        if (leaked) System.exit(1);
+    }
+
+    /**
+     * Runs something on the FX thread and waits for it, plus a pulse so the chart has laid out the result
+     */
+    private static void onFxThread(Runnable task) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            task.run();
+            Platform.runLater(done::countDown);
+        });
+        done.await();
+    }
+}
@@ -0,0 +1,123 @@
+package org.cdntrust.minish.kidscamp.scoreboard;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.beans.property.SimpleDoubleProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.stage.Stage;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.LatencyHistogram;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Pulse times while the bars animate, with the score labels styled the old way (an inline
+ * <tt>-fx-stroke-width</tt> style formatted and set every time a label moves) and then the current way (font and
+ * outline width bound to shared values). Reports the time spent in CSS and layout per pulse and the gap between
+ * pulses for each. Needs a display:
+ * <pre>
+ * java -cp target/benchmarks.jar org.cdntrust.minish.kidscamp.scoreboard.LabelPulseTime [teams] [seconds]
+ * </pre>
+ * In this package rather than with the other benchmarks, to use the label manager the scoreboard does.
+ */
+public class LabelPulseTime {
+
+    private static final double OUTLINE_WIDTH = 1.5;
+    private static final long NEW_SCORES_EVERY_NANOS = 500_000_000;
+
+    public static void main(String[] args) throws Exception {
+        int teamCount = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+
+        // Unmeasured, so the JIT has settled before either is timed
+        run(teamCount, 2, true);
+        LatencyHistogram[] restyled = run(teamCount, seconds, true);
+        LatencyHistogram[] bound = run(teamCount, seconds, false);
+
+        System.out.println(teamCount + " teams, " + seconds + " s each");
+        System.out.println("Restyled  layout " + restyled[0].summarise() + "  pulse gap " + restyled[1].summarise());
+        System.out.println("Bound     layout " + bound[0].summarise() + "  pulse gap " + bound[1].summarise());
+        Platform.exit();
+    }
+
+    /**
+     * Shows an animated bar chart with labels for a while, giving every team a new score twice a second
+     *
+     * @param restyle Whether to style the labels the old way
+     * @return Time spent in CSS and layout per pulse, and the time between pulses
+     */
+    private static LatencyHistogram[] run(int teamCount, int seconds, boolean restyle) throws InterruptedException {
+        LatencyHistogram layoutTime = new LatencyHistogram();
+        LatencyHistogram pulseGap = new LatencyHistogram();
+        CountDownLatch finished = new CountDownLatch(1);
+        Platform.runLater(() -> {
+            BarChart<String, Number> chart = new BarChart<>(new CategoryAxis(), new NumberAxis());
+            chart.setAnimated(true);
+            XYChart.Series<String, Number> series = new XYChart.Series<>();
+            chart.getData().add(series);
+            BarLabelManager labelManager = new BarLabelManager(new SimpleObjectProperty<>(Font.font(20)),
+                    new SimpleDoubleProperty(OUTLINE_WIDTH));
+            List<XYChart.Data<String, Number>> bars = new ArrayList<>();
+            for (int teamId = 0; teamId < teamCount; teamId++) {
+                XYChart.Data<String, Number> data = new XYChart.Data<>("Team " + teamId, 0);
+                bars.add(data);
+                series.getData().add(data);
+                labelManager.attach(teamId, data);
+            }
+
+            Stage stage = new Stage();
+            Scene scene = new Scene(chart, 1280, 720);
+            long[] layoutStart = new long[1];
+            scene.addPreLayoutPulseListener(() -> layoutStart[0] = System.nanoTime());
+            scene.addPostLayoutPulseListener(() -> layoutTime.recordSince(layoutStart[0]));
+            stage.setScene(scene);
+            stage.show();
+            if (restyle) {
+                for (Node node : chart.lookupAll(".outline")) {
+                    Text label = (Text) node;
+                    label.strokeWidthProperty().unbind();
+                    label.layoutYProperty().addListener((observable, oldValue, y) ->
+                            label.setStyle(String.format("-fx-stroke-width: %f;", OUTLINE_WIDTH)));
+                }
+            }
+
+            Random random = new Random(1);
+            long[] times = new long[3]; // start, last pulse, last new scores
+            new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    if (times[0] == 0) times[0] = now;
+                    if (times[1] != 0) pulseGap.record(now - times[1]);
+                    times[1] = now;
+                    if (now - times[2] >= NEW_SCORES_EVERY_NANOS) {
+                        times[2] = now;
+                        for (XYChart.Data<String, Number> bar : bars) {
+                            bar.setYValue(random.nextInt(1000));
+                        }
+                    }
+                    if (now - times[0] >= seconds * 1_000_000_000L) {
+                        stop();
+                        stage.close();
+                        finished.countDown();
+                    }
+                }
+            }.start();
+        });
+        finished.await();
+        return new LatencyHistogram[] {layoutTime, pulseGap};
+    }
+}
@@ -0,0 +1,113 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ChangePointsServer;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.IngestionLimits;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.LatencyHistogram;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreboardEngine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed loop throughput of a headless scoreboard's /changepoints endpoint: each client thread posts a one-change
+ * batch over a kept-alive connection, waits for the response, and posts the next. The rate limits are lifted so
+ * only the server itself is measured:
+ * <pre>
+ * java -cp target/benchmarks.jar org.cdntrust.minish.kidscamp.scoreboard.benchmarks.ChangePointsLoad [client threads] [seconds]
+ * </pre>
+ * Add <tt>-Dsun.net.httpserver.nodelay=false</tt> to see the server with Nagle's algorithm left on.
+ */
+public class ChangePointsLoad {
+
+    private static final int TEAM_COUNT = 10;
+    private static final int UNLIMITED = 100_000_000;
+
+    private static final LongAdder requests = new LongAdder();
+    private static final LongAdder failures = new LongAdder();
+    private static volatile boolean running = true;
+
+    public static void main(String[] args) throws Exception {
+        int clientThreads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        Path dataDir = Files.createTempDirectory("change-points-load");
+        ScoreboardEngine engine = new ScoreboardEngine(dataDir, false);
+        engine.start();
+        List<String> teams = Teams.names(TEAM_COUNT);
+        teams.forEach(engine::registerTeam);
+        engine.setIngestionLimits(new IngestionLimits(UNLIMITED, IngestionLimits.DEFAULTS.getMaxChangesPerBatch(),
+                IngestionLimits.DEFAULTS.getMaxPointsPerChange(), UNLIMITED));
+        engine.startIngestion(() -> true);
+        if (!engine.isHostingEndpoint()) throw new IllegalStateException("Port " + ChangePointsServer.DEFAULT_PORT + " is taken");
+
+        URL url = new URL("http://127.0.0.1:" + ChangePointsServer.DEFAULT_PORT + ChangePointsServer.PATH);
+        LatencyHistogram latency = new LatencyHistogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clientThreads; i++) {
+            byte[] body = ("{\"" + teams.get(i % TEAM_COUNT) + "\":1}").getBytes(StandardCharsets.UTF_8);
+            Thread thread = new Thread(() -> post(url, body, latency), "client-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        // Let connections open and the JIT settle before counting
+        Thread.sleep(1000);
+        requests.reset();
+        failures.reset();
+        latency.reset();
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        long counted = requests.sum();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        System.out.println(clientThreads + " clients, nodelay=" + System.getProperty("sun.net.httpserver.nodelay"));
+        System.out.println(String.format("%.0f requests/s, %d failed, latency %s", counted / elapsed, failures.sum(), latency.summarise()));
+        engine.close();
+    }
+
+    private static void post(URL url, byte[] body, LatencyHistogram latency) {
+        byte[] discard = new byte[256];
+        while (running) {
+            long start = System.nanoTime();
+            try {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+                int status = connection.getResponseCode();
+                // Reading the response to the end lets the connection be kept alive for the next request
+                try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    while (in != null && in.read(discard) >= 0) {
+                        // Discard
+                    }
+                }
+                if (status == 200) {
+                    requests.increment();
+                    latency.recordSince(start);
+                } else {
+                    failures.increment();
+                }
+            } catch (IOException e) {
+                failures.increment();
+            }
+        }
+    }
+}
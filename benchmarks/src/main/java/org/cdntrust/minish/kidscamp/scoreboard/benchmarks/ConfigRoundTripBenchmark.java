@@ -0,0 +1,40 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cdntrust.minish.kidscamp.scoreboard.ConfigPersister;
+import org.cdntrust.minish.kidscamp.scoreboard.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing and reading back the configuration, with the shared reader and writer and with a new ObjectMapper
+ * each time (as config.json used to be handled). Run with <tt>-prof gc</tt> to see the difference in allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConfigRoundTripBenchmark {
+
+    private Configuration config;
+
+    @Setup
+    public void setup() {
+        config = new Configuration(50.0, 0.03, "Consolas", true);
+    }
+
+    @Benchmark
+    public Configuration sharedCodec() throws IOException {
+        return ConfigPersister.CONFIG_READER.readValue(ConfigPersister.CONFIG_WRITER.writeValueAsBytes(config));
+    }
+
+    @Benchmark
+    public Configuration newObjectMapper() throws IOException {
+        byte[] json = new ObjectMapper().writeValueAsBytes(config);
+        return new ObjectMapper().readValue(json, Configuration.class);
+    }
+}
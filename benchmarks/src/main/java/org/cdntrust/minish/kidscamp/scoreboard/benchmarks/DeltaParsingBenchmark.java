@@ -0,0 +1,53 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import org.cdntrust.minish.kidscamp.scoreboard.engine.DeltaParser;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.TeamRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a batch of score changes, as done for every spooled batch and every /changepoints request
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DeltaParsingBenchmark {
+
+    @Param({"10", "500"})
+    public int teamCount;
+
+    @Param({"1", "50", "1000"})
+    public int batchSize;
+
+    private TeamRegistry teamRegistry;
+    private byte[] batch;
+
+    @Setup
+    public void setup() {
+        List<String> names = Teams.names(teamCount);
+        teamRegistry = new TeamRegistry();
+        teamRegistry.registerAll(names);
+
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < batchSize; i++) {
+            if (i > 0) json.append(',');
+            json.append('"').append(names.get(random.nextInt(teamCount))).append("\":").append(random.nextInt(21) - 10);
+        }
+        batch = json.append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<String, Integer> parse() throws IOException {
+        return DeltaParser.parse(batch, teamRegistry::contains);
+    }
+}
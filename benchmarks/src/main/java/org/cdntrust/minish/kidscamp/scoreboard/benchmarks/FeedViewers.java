@@ -0,0 +1,155 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ChangePointsServer;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.LatencyHistogram;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreFeed;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreboardEngine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opens many viewers on a headless scoreboard's live score feed, makes a stream of score changes, then checks that
+ * every viewer ends up with exactly the saved scores and counts any team sent again without having changed:
+ * <pre>
+ * java -cp target/benchmarks.jar org.cdntrust.minish.kidscamp.scoreboard.benchmarks.FeedViewers [viewers] [changes]
+ * </pre>
+ */
+public class FeedViewers {
+
+    private static final int TEAM_COUNT = 50;
+    private static final long CHANGE_INTERVAL_MS = 2;
+    private static final long SETTLE_TIMEOUT_MS = 10000;
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Long>> SCORES = new TypeReference<Map<String, Long>>() {};
+
+    public static void main(String[] args) throws Exception {
+        int viewerCount = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int changeCount = args.length > 1 ? Integer.parseInt(args[1]) : 1500;
+
+        Path dataDir = Files.createTempDirectory("feed-viewers");
+        ScoreboardEngine engine = new ScoreboardEngine(dataDir, false);
+        engine.start();
+        List<String> teams = Teams.names(TEAM_COUNT);
+        teams.forEach(engine::registerTeam);
+        engine.startIngestion(() -> true);
+        if (!engine.isHostingEndpoint()) throw new IllegalStateException("Port " + ChangePointsServer.DEFAULT_PORT + " is taken");
+
+        List<Viewer> viewers = new ArrayList<>();
+        for (int i = 0; i < viewerCount; i++) {
+            Viewer viewer = new Viewer(i);
+            viewers.add(viewer);
+            viewer.start();
+        }
+        while (engine.getMetrics().getFeedViewers() < viewerCount) {
+            Thread.sleep(10);
+        }
+
+        // Only ever adding points, so a team sent with the same score as before can only be a resend
+        Random random = new Random(1);
+        for (int i = 0; i < changeCount; i++) {
+            engine.applyDelta(teams.get(random.nextInt(TEAM_COUNT)), 1 + random.nextInt(10), "feed-viewers");
+            Thread.sleep(CHANGE_INTERVAL_MS);
+        }
+        long changesDone = System.nanoTime();
+
+        // Every viewer should catch up with the saved scores shortly after the last change
+        Map<String, Long> expected = engine.snapshot();
+        LatencyHistogram settleTime = new LatencyHistogram();
+        int unsettled = 0;
+        long events = 0;
+        long resent = 0;
+        for (Viewer viewer : viewers) {
+            long settledAt = viewer.awaitScores(expected, changesDone + TimeUnit.MILLISECONDS.toNanos(SETTLE_TIMEOUT_MS));
+            if (settledAt < 0) {
+                unsettled++;
+            } else {
+                settleTime.record(Math.max(0, settledAt - changesDone));
+            }
+            events += viewer.events;
+            resent += viewer.resent;
+        }
+
+        System.out.println(viewerCount + " viewers, " + changeCount + " changes over " + TEAM_COUNT + " teams");
+        System.out.println("Ended on the saved scores: " + (viewerCount - unsettled) + "/" + viewerCount
+                + ", after the last change " + settleTime.summarise());
+        System.out.println("Score events: " + events / Math.max(1, viewerCount) + " per viewer, teams resent unchanged: " + resent);
+        // Hangs up on every viewer
+        engine.close();
+    }
+
+    /**
+     * One browser following the feed, on its own thread
+     */
+    private static class Viewer extends Thread {
+
+        // Guarded by this
+        private final Map<String, Long> scores = new HashMap<>();
+        private long events;
+        private long resent;
+        private long changedAt;
+
+        Viewer(int number) {
+            super("viewer-" + number);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + ChangePointsServer.DEFAULT_PORT + ScoreFeed.STREAM_PATH).openConnection();
+                try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                    String event = null;
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.startsWith("event: ")) {
+                            event = line.substring(7);
+                        } else if (line.startsWith("data: ")) {
+                            received(event, MAPPER.readValue(line.substring(6), SCORES));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // Disconnected at the end
+            }
+        }
+
+        private synchronized void received(String event, Map<String, Long> changed) {
+            if ("scores".equals(event)) {
+                events++;
+                for (Map.Entry<String, Long> team : changed.entrySet()) {
+                    if (team.getValue().equals(scores.get(team.getKey()))) resent++;
+                }
+            }
+            scores.putAll(changed);
+            changedAt = System.nanoTime();
+            notifyAll();
+        }
+
+        /**
+         * @return When the viewer was last sent a change, once it has the given scores; or -1 if it doesn't by the deadline
+         */
+        synchronized long awaitScores(Map<String, Long> expected, long deadline) throws InterruptedException {
+            while (!scores.equals(expected)) {
+                long wait = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (wait <= 0) return -1;
+                wait(wait);
+            }
+            return changedAt;
+        }
+    }
+}
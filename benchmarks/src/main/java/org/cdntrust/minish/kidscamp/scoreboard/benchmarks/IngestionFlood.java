@@ -0,0 +1,242 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ChangePointsServer;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.LatencyHistogram;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreboardEngine;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Floods a headless scoreboard's /changepoints endpoint with score changes, while a well behaved client sends one
+ * change every 100ms and a stand-in for the display reads the scores 60 times a second, to check that the board
+ * stays responsive and the well behaved client still gets through. Not a JMH benchmark, as a flood is open loop:
+ * <pre>
+ * java -cp target/benchmarks.jar org.cdntrust.minish.kidscamp.scoreboard.benchmarks.IngestionFlood [deltas per second] [seconds] [flooding addresses]
+ * </pre>
+ * Each flooding thread sends from its own loopback address (127.0.0.10 upwards) so the per-address limits apply
+ * as they would to separate clients; this needs an OS that answers on all of 127/8, such as Linux.
+ */
+public class IngestionFlood {
+
+    // Each batch changes every team once
+    private static final int BATCH_SIZE = 50;
+    private static final String PROBE_TEAM = "Probe";
+    private static final long PROBE_INTERVAL_MS = 100;
+    private static final long FRAME_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private static final Map<Integer, LongAdder> floodResponses = new ConcurrentHashMap<>();
+    private static final LongAdder floodDeltasSent = new LongAdder();
+    private static volatile boolean running = true;
+    // Keeps the frame reader's work from being optimised away
+    private static volatile long frameChecksum;
+
+    public static void main(String[] args) throws Exception {
+        int deltasPerSecond = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int floodingAddresses = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+        Path dataDir = Files.createTempDirectory("ingestion-flood");
+        ScoreboardEngine engine = new ScoreboardEngine(dataDir, false);
+        engine.start();
+        List<String> teams = Teams.names(BATCH_SIZE);
+        teams.forEach(engine::registerTeam);
+        int probeTeamId = engine.registerTeam(PROBE_TEAM);
+        engine.startIngestion(() -> true);
+        if (!engine.isHostingEndpoint()) throw new IllegalStateException("Port " + ChangePointsServer.DEFAULT_PORT + " is taken");
+
+        List<Thread> threads = new ArrayList<>();
+        long perThread = Math.max(1, deltasPerSecond / floodingAddresses);
+        for (int i = 0; i < floodingAddresses; i++) {
+            String address = "127.0.0." + (10 + i);
+            threads.add(start("flood-" + i, () -> flood(address, teams, perThread)));
+        }
+        LatencyHistogram probeLatency = new LatencyHistogram();
+        AtomicLong probesApplied = new AtomicLong();
+        AtomicLong probesSent = new AtomicLong();
+        threads.add(start("probe", () -> probe(probeLatency, probesSent, probesApplied)));
+        LatencyHistogram frameGaps = new LatencyHistogram();
+        threads.add(start("frames", () -> readFrames(engine, frameGaps)));
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // Let the queue finish applying what it took
+        long drainStart = System.nanoTime();
+        while (engine.getMetrics().getIngestionQueueDepth() > 0) {
+            Thread.sleep(10);
+        }
+        long drainMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - drainStart);
+
+        System.out.println("Flood: " + floodDeltasSent.sum() / seconds + " deltas/s offered from " + floodingAddresses + " addresses"
+                + " (target " + deltasPerSecond + ")");
+        System.out.println("Flood responses: " + floodResponses);
+        System.out.println("Probe: " + probesApplied.get() + "/" + probesSent.get() + " accepted, latency " + probeLatency.summarise()
+                + ", score " + engine.getScoreStore().get(probeTeamId));
+        System.out.println("Frame gaps: " + frameGaps.summarise());
+        System.out.println("Queue drained " + drainMs + "ms after the flood stopped");
+        System.out.println(engine.getMetrics().describe());
+        engine.close();
+    }
+
+    private static Thread start(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Sends batches of random changes as fast as the target rate allows, reconnecting if the server hangs up
+     */
+    private static void flood(String localAddress, List<String> teams, long deltasPerSecond) {
+        Random random = new Random(localAddress.hashCode());
+        long batchIntervalNanos = TimeUnit.SECONDS.toNanos(1) * BATCH_SIZE / deltasPerSecond;
+        long next = System.nanoTime();
+        HttpClient client = null;
+        while (running) {
+            try {
+                if (client == null) client = new HttpClient(localAddress);
+                StringBuilder json = new StringBuilder("{");
+                for (String team : teams) {
+                    if (json.length() > 1) json.append(',');
+                    json.append('"').append(team).append("\":").append(random.nextInt(21) - 10);
+                }
+                json.append('}');
+                int status = client.post(json.toString());
+                floodResponses.computeIfAbsent(status, s -> new LongAdder()).increment();
+                floodDeltasSent.add(BATCH_SIZE);
+            } catch (IOException e) {
+                floodResponses.computeIfAbsent(-1, s -> new LongAdder()).increment();
+                if (client != null) client.close();
+                client = null;
+            }
+            next += batchIntervalNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                sleepNanos(wait);
+            } else if (wait < -TimeUnit.SECONDS.toNanos(1)) {
+                // Can't keep up; don't try to make up for it all at once
+                next = System.nanoTime();
+            }
+        }
+        if (client != null) client.close();
+    }
+
+    private static void probe(LatencyHistogram latency, AtomicLong sent, AtomicLong applied) {
+        HttpClient client = null;
+        while (running) {
+            long start = System.nanoTime();
+            try {
+                if (client == null) client = new HttpClient("127.0.0.3");
+                sent.incrementAndGet();
+                if (client.post("{\"" + PROBE_TEAM + "\":1}") == 200) applied.incrementAndGet();
+                latency.recordSince(start);
+            } catch (IOException e) {
+                if (client != null) client.close();
+                client = null;
+            }
+            sleepNanos(TimeUnit.MILLISECONDS.toNanos(PROBE_INTERVAL_MS));
+        }
+        if (client != null) client.close();
+    }
+
+    /**
+     * Reads every score once a frame, as the display does, timing the gaps between frames
+     */
+    private static void readFrames(ScoreboardEngine engine, LatencyHistogram gaps) {
+        long last = System.nanoTime();
+        long sum = 0;
+        while (running) {
+            sleepNanos(FRAME_INTERVAL_NANOS);
+            for (long score : engine.getScoreStore().snapshot()) {
+                sum += score;
+            }
+            long now = System.nanoTime();
+            gaps.record(now - last);
+            last = now;
+        }
+        frameChecksum = sum;
+    }
+
+    private static void sleepNanos(long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bare bones keep-alive HTTP/1.1 client, so each flooding thread can send from its own address
+     */
+    private static class HttpClient {
+
+        private final Socket socket = new Socket();
+        private final OutputStream out;
+        private final InputStream in;
+
+        HttpClient(String localAddress) throws IOException {
+            socket.bind(new InetSocketAddress(localAddress, 0));
+            socket.connect(new InetSocketAddress("127.0.0.1", ChangePointsServer.DEFAULT_PORT));
+            socket.setTcpNoDelay(true);
+            out = socket.getOutputStream();
+            in = new BufferedInputStream(socket.getInputStream());
+        }
+
+        int post(String json) throws IOException {
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            String head = "POST " + ChangePointsServer.PATH + " HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                    + "Content-Length: " + body.length + "\r\n\r\n";
+            out.write(head.getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+
+            String statusLine = readLine();
+            int contentLength = 0;
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                if (line.toLowerCase().startsWith("content-length:")) contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+            for (int i = 0; i < contentLength; i++) {
+                if (in.read() < 0) throw new IOException("Connection closed mid-response");
+            }
+            return Integer.parseInt(statusLine.split(" ")[1]);
+        }
+
+        private String readLine() throws IOException {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != '\n') {
+                if (b < 0) throw new IOException("Connection closed");
+                if (b != '\r') line.write(b);
+            }
+            return line.toString("US-ASCII");
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import org.cdntrust.minish.kidscamp.scoreboard.engine.JsonCodec;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreJournal;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreboardEngine;
+
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks that the journal keeps numbering changes across restarts when the scores are loaded from the mapped score
+ * file, so that falling back to the journal (here, after damaging the mapped file) loses nothing:
+ * <pre>
+ * java -cp target/benchmarks.jar org.cdntrust.minish.kidscamp.scoreboard.benchmarks.MappedRestartCheck
+ * </pre>
+ * Starts from a snapshot at change 100, makes three changes in each of two runs, damages <tt>teamScores.dat</tt>
+ * and starts a third time. Exits with status 1 if the score or the numbering is wrong.
+ */
+public class MappedRestartCheck {
+
+    private static final String TEAM = "Red Girls";
+    private static final long SNAPSHOT_SEQ = 100;
+    private static final int RUNS = 2;
+    private static final int CHANGES_PER_RUN = 3;
+    private static final long POINTS = 10;
+
+    public static void main(String[] args) throws Exception {
+        Path dataDir = Files.createTempDirectory("mapped-restart");
+        Files.write(dataDir.resolve(ScoreboardEngine.JOURNAL_SNAPSHOT_FILE_NAME),
+                JsonCodec.JOURNAL_SNAPSHOT_WRITER.writeValueAsBytes(new ScoreJournal.Snapshot(SNAPSHOT_SEQ, Collections.emptyMap())));
+
+        for (int run = 0; run < RUNS; run++) {
+            ScoreboardEngine engine = new ScoreboardEngine(dataDir, true);
+            engine.start();
+            engine.registerTeam(TEAM);
+            for (int i = 0; i < CHANGES_PER_RUN; i++) {
+                engine.applyDelta(TEAM, POINTS, "mapped-restart-check");
+            }
+            engine.close();
+        }
+
+        // A byte inside the first score, so the checksum no longer matches and the journal has to be used
+        try (RandomAccessFile mapped = new RandomAccessFile(dataDir.resolve(ScoreboardEngine.MAPPED_SAVE_FILE_NAME).toFile(), "rw")) {
+            mapped.seek(33);
+            mapped.write(mapped.read() ^ 0xFF);
+        }
+        ScoreboardEngine engine = new ScoreboardEngine(dataDir, true);
+        engine.start();
+        long score = engine.snapshot().getOrDefault(TEAM, 0L);
+        engine.close();
+
+        List<Long> seqs = new ArrayList<>();
+        for (String line : Files.readAllLines(dataDir.resolve(ScoreboardEngine.JOURNAL_FILE_NAME), StandardCharsets.UTF_8)) {
+            if (!line.isEmpty()) seqs.add(JsonCodec.JOURNAL_EVENT_READER.<ScoreJournal.Event>readValue(line).getSeq());
+        }
+        List<Long> expectedSeqs = new ArrayList<>();
+        for (long seq = SNAPSHOT_SEQ + 1; seq <= SNAPSHOT_SEQ + RUNS * CHANGES_PER_RUN; seq++) {
+            expectedSeqs.add(seq);
+        }
+        long expectedScore = RUNS * CHANGES_PER_RUN * POINTS;
+
+        System.out.println("Journal numbers: " + seqs + " (expected " + expectedSeqs + ")");
+        System.out.println("Score after falling back to the journal: " + score + " (expected " + expectedScore + ")");
+        boolean passed = score == expectedScore && seqs.equals(expectedSeqs);
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) System.exit(1);
+    }
+}
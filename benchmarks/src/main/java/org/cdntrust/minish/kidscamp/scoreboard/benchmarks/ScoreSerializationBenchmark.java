@@ -0,0 +1,49 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.JsonCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing every team's score, as done by each save of teamScores.json.
+ * Compares the shared writer with building a new ObjectMapper each time (as the save used to);
+ * run with <tt>-prof gc</tt> to see the difference in allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoreSerializationBenchmark {
+
+    @Param({"10", "500", "10000"})
+    public int teamCount;
+
+    private Map<String, Long> scores;
+
+    @Setup
+    public void setup() {
+        List<String> names = Teams.names(teamCount);
+        scores = new LinkedHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            scores.put(names.get(i), (long) i * 10);
+        }
+    }
+
+    @Benchmark
+    public byte[] sharedWriter() throws IOException {
+        return JsonCodec.SCORES_WRITER.writeValueAsBytes(scores);
+    }
+
+    @Benchmark
+    public byte[] newObjectMapper() throws IOException {
+        return new ObjectMapper().writeValueAsBytes(scores);
+    }
+}
@@ -0,0 +1,66 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreStore;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.TeamRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding a team by name and adding to its score, as done for every change applied.
+ * The linear scan is how teams used to be found, for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TeamLookupBenchmark {
+
+    @Param({"10", "500", "10000"})
+    public int teamCount;
+
+    private List<String> names;
+    private String[] lookups;
+    private TeamRegistry teamRegistry;
+    private ScoreStore scoreStore;
+    private int next;
+
+    @Setup
+    public void setup() {
+        names = Teams.names(teamCount);
+        teamRegistry = new TeamRegistry();
+        teamRegistry.registerAll(names);
+        scoreStore = new ScoreStore(teamCount);
+
+        // Copies, so that lookups can't short cut on identical strings
+        lookups = new String[teamCount];
+        for (int i = 0; i < teamCount; i++) {
+            lookups[i] = new String(names.get(i));
+        }
+    }
+
+    private String nextName() {
+        next = (next + 7) % teamCount;
+        return lookups[next];
+    }
+
+    @Benchmark
+    public long registryLookup() {
+        int teamId = teamRegistry.idOf(nextName());
+        return scoreStore.add(teamId, 10);
+    }
+
+    @Benchmark
+    public long linearScan() {
+        String team = nextName();
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equals(team)) {
+                return scoreStore.add(i, 10);
+            }
+        }
+        return -1;
+    }
+}
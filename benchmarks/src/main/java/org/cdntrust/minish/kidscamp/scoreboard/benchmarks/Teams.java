@@ -0,0 +1,20 @@
+package org.cdntrust.minish.kidscamp.scoreboard.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Made up team names for benchmarks
+ */
+final class Teams {
+
+    private Teams() {}
+
+    static List<String> names(int count) {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add("Team " + i);
+        }
+        return names;
+    }
+}
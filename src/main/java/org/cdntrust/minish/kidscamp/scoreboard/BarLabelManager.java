@@ -0,0 +1,146 @@
+package org.cdntrust.minish.kidscamp.scoreboard;
+
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableDoubleValue;
+import javafx.beans.value.ObservableObjectValue;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.chart.XYChart;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the score label shown on each bar: exactly one {@link Text} per team for the life of the application,
+ * which is updated in place when the score changes rather than being recreated.
+ * <p>
+ * Every label's font and outline width are bound to shared values, so restyling them never involves CSS.
+ */
+public class BarLabelManager {
+
+    private final ObservableObjectValue<Font> fontProperty;
+    private final ObservableDoubleValue outlineWidth;
+    private final List<BarLabel> labels = new ArrayList<>();
+
+    /**
+     * @param fontProperty Font shared by all labels
+     * @param outlineWidth Stroke width of the label outlines
+     */
+    public BarLabelManager(ObservableObjectValue<Font> fontProperty, ObservableDoubleValue outlineWidth) {
+        this.fontProperty = fontProperty;
+        this.outlineWidth = outlineWidth;
+    }
+
+    /**
+     * Shows the label for a team on the bar representing its data point. Attaching the same team again moves its
+     * existing label across rather than creating another.
+     *
+     * @param teamId Id of the team the bar belongs to
+     * @param data Data point of the bar
+     */
+    public void attach(int teamId, XYChart.Data<String, Number> data) {
+        BarLabel label = getOrCreate(teamId);
+        label.text.setText(data.getYValue() + "");
+        if (label.data != data) {
+            label.data = data;
+            data.nodeProperty().addListener((ov, oldNode, node) -> {
+                if (label.data == data) label.setNode(node);
+            });
+            label.setNode(data.getNode());
+        }
+    }
+
+    public void setScore(int teamId, long score) {
+        if (teamId < labels.size() && labels.get(teamId) != null) {
+            labels.get(teamId).text.setText(score + "");
+        }
+    }
+
+    /**
+     * @return Number of labels owned, which never grows past the number of teams; for the soak check in benchmarks
+     */
+    int labelCount() {
+        int count = 0;
+        for (BarLabel label : labels) {
+            if (label != null) count++;
+        }
+        return count;
+    }
+
+    private BarLabel getOrCreate(int teamId) {
+        while (labels.size() <= teamId) {
+            labels.add(null);
+        }
+        BarLabel label = labels.get(teamId);
+        if (label == null) {
+            label = new BarLabel();
+            labels.set(teamId, label);
+        }
+        return label;
+    }
+
+    /**
+     * A label positioned over the middle of its bar
+     * Credit: https://stackoverflow.com/a/15375168
+     */
+    private class BarLabel {
+        private final Text text = new Text();
+        private XYChart.Data<String, Number> data;
+        private Node node;
+
+        private final ChangeListener<Parent> parentListener = (ov, oldParent, parent) -> moveTo(parent);
+        private final ChangeListener<Bounds> boundsListener = (ov, oldBounds, bounds) -> updateBounds(bounds);
+
+        private BarLabel() {
+            text.fontProperty().bind(fontProperty);
+            text.strokeWidthProperty().bind(outlineWidth);
+            text.getStyleClass().add("outline");
+            text.fontProperty().addListener((observable, oldValue, newValue) -> {
+                if (node != null) updateBounds(node.getBoundsInParent());
+            });
+        }
+
+        private void setNode(Node newNode) {
+            if (node != null) {
+                node.parentProperty().removeListener(parentListener);
+                node.boundsInParentProperty().removeListener(boundsListener);
+            }
+            node = newNode;
+            if (node == null) {
+                moveTo(null);
+                return;
+            }
+            node.parentProperty().addListener(parentListener);
+            node.boundsInParentProperty().addListener(boundsListener);
+            moveTo(node.getParent());
+            updateBounds(node.getBoundsInParent());
+        }
+
+        private void moveTo(Parent parent) {
+            Parent current = text.getParent();
+            if (current == parent) return;
+            if (current instanceof Group) {
+                ((Group) current).getChildren().remove(text);
+            }
+            if (parent instanceof Group) {
+                ((Group) parent).getChildren().add(text);
+            }
+        }
+
+        private void updateBounds(Bounds bounds) {
+            long yPosition = Math.round(
+                    bounds.getMinY()
+                            + (bounds.getMaxY() - bounds.getMinY()) / 2
+            );
+
+            text.setLayoutX(
+                    Math.round(bounds.getMinX() + bounds.getWidth() / 2 - text.getLayoutBounds().getWidth() / 2)
+            );
+            text.setLayoutY(yPosition);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package org.cdntrust.minish.kidscamp.scoreboard;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.value.ObservableDoubleValue;
+import javafx.beans.value.ObservableObjectValue;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.Background;
+import javafx.scene.layout.BackgroundFill;
+import javafx.scene.layout.Border;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.Paint;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+import javafx.scene.text.TextAlignment;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws the scores straight onto a single {@link Canvas}, as an alternative to the {@link javafx.scene.chart.BarChart}
+ * for boards with many teams. There is no node per bar or label, so no per-bar CSS or layout; when scores change only
+ * the columns of the bars that moved are redrawn, unless the axis has to be rescaled.
+ * <p>
+ * Bars are filled the same way as the chart's: from the <tt>.dataN.chart-bar</tt> styles, or the team's own
+ * colour from the roster.
+ */
+public class CanvasScoreRenderer extends Region {
+
+    private static final Font NAME_FONT = Font.font(24);
+    private static final Font AXIS_FONT = Font.font(27);
+    private static final double TOP_PADDING = 10;
+    private static final double BAR_FRACTION = 0.8;
+    private static final long EASING_NANOS = 100_000_000;
+
+    private final Canvas canvas = new Canvas();
+    private final GraphicsContext g = canvas.getGraphicsContext2D();
+    // Never shown; given each bar's style classes so CSS can tell us how to fill it
+    private final Region colourProbe = new Region();
+    private final Text measure = new Text();
+    private final ObservableObjectValue<Font> fontProperty;
+    private final ObservableDoubleValue outlineWidth;
+    private final AnimationTimer animator;
+
+    private int[] teamIds = new int[0];
+    private String[] names = new String[0];
+    private double[] nameWidths = new double[0];
+    private String[] customColours = new String[0];
+    private Paint[] fills = new Paint[0];
+    private Paint barBorder;
+    private double[] shown = new double[0];
+    private double[] target = new double[0];
+    private boolean[] dirty = new boolean[0];
+    private boolean fullRedraw = true;
+    private double axisMin = 0;
+    private double axisMax = 10;
+    private double tickUnit = 1;
+    private double digitWidth;
+    private long lastFrameNanos;
+
+    // Layout, worked out on every full redraw
+    private double plotLeft, plotTop, plotBottom, slotWidth;
+
+    /**
+     * @param fontProperty Font of the score labels
+     * @param outlineWidth Stroke width of the score label outlines
+     */
+    public CanvasScoreRenderer(ObservableObjectValue<Font> fontProperty, ObservableDoubleValue outlineWidth) {
+        this.fontProperty = fontProperty;
+        this.outlineWidth = outlineWidth;
+        colourProbe.setVisible(false);
+        colourProbe.setManaged(false);
+        getChildren().addAll(canvas, colourProbe);
+        animator = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onFrame(now);
+            }
+        };
+        fontProperty.addListener((observable, oldFont, font) -> refresh());
+        outlineWidth.addListener((observable, oldWidth, width) -> refresh());
+        sceneProperty().addListener((observable, oldScene, scene) -> {
+            if (scene != null) {
+                refreshColours();
+                refresh();
+            }
+        });
+    }
+
+    /**
+     * Shows a bar for each of the given teams, in order
+     *
+     * @param colours Each team's own colour, or null to use its <tt>.dataN.chart-bar</tt> style
+     * @param scores Current score of every team, by team id
+     */
+    public void setTeams(List<Integer> teamIds, List<String> names, List<String> colours, long[] scores) {
+        int count = teamIds.size();
+        double[] oldShown = shown;
+        int[] oldIds = this.teamIds;
+
+        this.teamIds = new int[count];
+        this.names = names.toArray(new String[0]);
+        nameWidths = new double[count];
+        fills = new Paint[count];
+        Arrays.fill(fills, Color.GRAY);
+        shown = new double[count];
+        target = new double[count];
+        dirty = new boolean[count];
+        measure.setFont(NAME_FONT);
+        for (int i = 0; i < count; i++) {
+            int teamId = teamIds.get(i);
+            this.teamIds[i] = teamId;
+            target[i] = teamId < scores.length ? scores[teamId] : 0;
+            // Bars that were already showing carry on from where they were
+            shown[i] = target[i];
+            for (int j = 0; j < oldIds.length; j++) {
+                if (oldIds[j] == teamId) shown[i] = oldShown[j];
+            }
+            measure.setText(this.names[i]);
+            nameWidths[i] = measure.getLayoutBounds().getWidth();
+        }
+        customColours = colours.toArray(new String[0]);
+        refreshColours();
+        refresh();
+    }
+
+    /**
+     * Animates the bars towards the given scores
+     *
+     * @param scores Current score of every team, by team id
+     */
+    public void setScores(long[] scores) {
+        boolean changed = false;
+        for (int i = 0; i < teamIds.length; i++) {
+            int teamId = teamIds[i];
+            double score = teamId < scores.length ? scores[teamId] : 0;
+            if (score != target[i]) {
+                target[i] = score;
+                changed = true;
+            }
+        }
+        if (changed) animator.start();
+    }
+
+    /**
+     * Redraws everything on the next frame
+     */
+    public void refresh() {
+        fullRedraw = true;
+        animator.start();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = snapSizeX(getWidth());
+        double height = snapSizeY(getHeight());
+        if (canvas.getWidth() != width || canvas.getHeight() != height) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            refresh();
+        }
+    }
+
+    /**
+     * Looks up the fill of every bar from the stylesheets, as the chart would colour it
+     */
+    private void refreshColours() {
+        if (getScene() == null) return;
+        colourProbe.getStyleClass().setAll("chart-bar");
+        colourProbe.setStyle("");
+        colourProbe.applyCss();
+        Border border = colourProbe.getBorder();
+        barBorder = border == null || border.getStrokes().isEmpty() ? null : border.getStrokes().get(0).getTopStroke();
+
+        for (int i = 0; i < fills.length; i++) {
+            colourProbe.getStyleClass().setAll("chart-bar", "series0", "data" + i, "default-color0");
+            String colour = i < customColours.length ? customColours[i] : null;
+            colourProbe.setStyle(colour == null ? "" : "-fx-bar-fill: " + colour + ";");
+            colourProbe.applyCss();
+            Background background = colourProbe.getBackground();
+            List<BackgroundFill> layers = background == null ? null : background.getFills();
+            fills[i] = layers == null || layers.isEmpty() ? Color.GRAY : layers.get(layers.size() - 1).getFill();
+        }
+        fullRedraw = true;
+    }
+
+    private void onFrame(long now) {
+        double elapsed = lastFrameNanos == 0 ? 16_000_000 : now - lastFrameNanos;
+        lastFrameNanos = now;
+        double step = 1 - Math.exp(-elapsed / EASING_NANOS);
+
+        if (rescaleAxis()) fullRedraw = true;
+        double pixelsPerPoint = (plotBottom - plotTop) / (axisMax - axisMin);
+        boolean moving = false;
+        for (int i = 0; i < shown.length; i++) {
+            double distance = target[i] - shown[i];
+            if (distance == 0) continue;
+            // Close enough not to see the difference, so finish the animation
+            shown[i] = Math.abs(distance * pixelsPerPoint) < 0.5 ? target[i] : shown[i] + distance * step;
+            dirty[i] = true;
+            moving |= shown[i] != target[i];
+        }
+
+        if (fullRedraw) {
+            drawAll();
+        } else {
+            for (int i = 0; i < dirty.length; i++) {
+                if (dirty[i]) drawSlot(i, true);
+            }
+        }
+        Arrays.fill(dirty, false);
+
+        if (!moving) {
+            animator.stop();
+            lastFrameNanos = 0;
+        }
+    }
+
+    /**
+     * Grows or shrinks the axis to fit the highest and lowest scores, always including zero, in whole ticks so it
+     * only changes now and then
+     *
+     * @return Whether the axis changed
+     */
+    private boolean rescaleAxis() {
+        double highest = 0;
+        double lowest = 0;
+        for (double score : target) {
+            highest = Math.max(highest, score);
+            lowest = Math.min(lowest, score);
+        }
+        double unit = niceTickUnit(Math.max(highest - lowest, 10) / 8);
+        double max = Math.max(lowest < 0 ? 0 : 10, Math.ceil(highest * 1.05 / unit) * unit);
+        double min = Math.floor(lowest * 1.05 / unit) * unit;
+        if (max == axisMax && min == axisMin && unit == tickUnit) return false;
+        axisMax = max;
+        axisMin = min;
+        tickUnit = unit;
+        return true;
+    }
+
+    private static double niceTickUnit(double rough) {
+        double magnitude = Math.pow(10, Math.floor(Math.log10(rough)));
+        double fraction = rough / magnitude;
+        return (fraction <= 1 ? 1 : fraction <= 2 ? 2 : fraction <= 5 ? 5 : 10) * magnitude;
+    }
+
+    private void drawAll() {
+        fullRedraw = false;
+        double width = canvas.getWidth();
+        double height = canvas.getHeight();
+        g.clearRect(0, 0, width, height);
+
+        measure.setFont(AXIS_FONT);
+        measure.setText(formatTick(axisMax));
+        double widestTick = measure.getLayoutBounds().getWidth();
+        measure.setText(formatTick(axisMin));
+        plotLeft = Math.max(widestTick, measure.getLayoutBounds().getWidth()) + 15;
+        plotTop = TOP_PADDING;
+        plotBottom = height - NAME_FONT.getSize() * 1.6;
+        slotWidth = teamIds.length == 0 ? 0 : (width - plotLeft) / teamIds.length;
+        measure.setFont(fontProperty.get());
+        measure.setText("0123456789");
+        digitWidth = measure.getLayoutBounds().getWidth() / 10;
+
+        // Axis labels
+        g.setFill(Color.BLACK);
+        g.setFont(AXIS_FONT);
+        g.setTextAlign(TextAlignment.RIGHT);
+        g.setTextBaseline(VPos.CENTER);
+        for (double tick = axisMin; tick <= axisMax; tick += tickUnit) {
+            g.fillText(formatTick(tick), plotLeft - 8, yOf(tick));
+        }
+        g.setStroke(Color.BLACK);
+        g.setLineWidth(1);
+        g.strokeLine(plotLeft - 0.5, plotTop, plotLeft - 0.5, plotBottom);
+
+        // Team names, where there's room for them
+        g.setFont(NAME_FONT);
+        g.setTextAlign(TextAlignment.CENTER);
+        g.setTextBaseline(VPos.TOP);
+        for (int i = 0; i < teamIds.length; i++) {
+            if (nameWidths[i] <= slotWidth) {
+                g.fillText(names[i], plotLeft + slotWidth * (i + 0.5), plotBottom + 4);
+            }
+        }
+
+        for (int i = 0; i < teamIds.length; i++) {
+            drawSlot(i, false);
+        }
+    }
+
+    /**
+     * Draws one team's column of the plot: grid lines, bar and score label
+     *
+     * @param clear Whether to clear the column first, i.e. this is a partial redraw
+     */
+    private void drawSlot(int i, boolean clear) {
+        double left = plotLeft + slotWidth * i;
+        g.save();
+        g.beginPath();
+        g.rect(left, plotTop - 1, slotWidth, plotBottom - plotTop + 1);
+        g.clip();
+        if (clear) g.clearRect(left, plotTop - 1, slotWidth, plotBottom - plotTop + 1);
+
+        g.setStroke(Color.LIGHTGRAY);
+        g.setLineWidth(1);
+        for (double tick = axisMin + tickUnit; tick <= axisMax; tick += tickUnit) {
+            double y = Math.round(yOf(tick)) + 0.5;
+            g.strokeLine(left, y, left + slotWidth, y);
+        }
+
+        // Up from zero for a positive score and down for a negative one, as on the bar chart
+        double barWidth = slotWidth * BAR_FRACTION;
+        double barLeft = left + (slotWidth - barWidth) / 2;
+        double zeroY = yOf(0);
+        double scoreY = yOf(shown[i]);
+        double barTop = Math.min(zeroY, scoreY);
+        double barHeight = Math.abs(scoreY - zeroY);
+        if (barHeight > 0) {
+            g.setFill(fills[i]);
+            g.fillRect(barLeft, barTop, barWidth, barHeight);
+            if (barBorder != null && barWidth > 3) {
+                g.setStroke(barBorder);
+                g.strokeRect(barLeft + 0.5, barTop + 0.5, barWidth - 1, barHeight);
+            }
+        }
+
+        String label = Long.toString(Math.round(shown[i]));
+        if (label.length() * digitWidth <= slotWidth) {
+            double x = left + slotWidth / 2;
+            double y = barTop + barHeight / 2;
+            g.setFont(fontProperty.get());
+            g.setTextAlign(TextAlignment.CENTER);
+            g.setTextBaseline(VPos.CENTER);
+            // The chart's labels are stroked outside the text, which on a canvas means twice the width, centred
+            g.setStroke(Color.WHITE);
+            g.setLineWidth(outlineWidth.get() * 2);
+            g.strokeText(label, x, y);
+            g.setFill(Color.BLACK);
+            g.fillText(label, x, y);
+        }
+        g.restore();
+    }
+
+    private double yOf(double score) {
+        return plotBottom - (plotBottom - plotTop) * (score - axisMin) / (axisMax - axisMin);
+    }
+
+    private static String formatTick(double tick) {
+        return Long.toString(Math.round(tick));
+    }
+}
@@ -0,0 +1,73 @@
+package org.cdntrust.minish.kidscamp.scoreboard;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.AtomicFiles;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.DaemonThreadFactory;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.JsonCodec;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Saves the configuration in the background once it has stopped changing for a little while, so that
+ * e.g. holding down a font size button results in a single write rather than one per step.
+ */
+public class ConfigPersister {
+
+    public static final ObjectReader CONFIG_READER = JsonCodec.readerFor(Configuration.class);
+    public static final ObjectWriter CONFIG_WRITER = JsonCodec.writerFor(Configuration.class);
+
+    private final Path file;
+    private final Configuration config;
+    private final long quietPeriodMs;
+    private final AtomicReference<byte[]> pending = new AtomicReference<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("config-persister"));
+    private ScheduledFuture<?> scheduledWrite;
+
+    /**
+     * @param quietPeriodMs How long the configuration must go unchanged before it is written
+     */
+    public ConfigPersister(Path file, Configuration config, long quietPeriodMs) {
+        this.file = file;
+        this.config = config;
+        this.quietPeriodMs = quietPeriodMs;
+        config.addListener(observable -> configChanged());
+    }
+
+    private synchronized void configChanged() {
+        // Capture the settings now, on the thread that changed them, so the writer never reads them mid-change
+        try {
+            pending.set(CONFIG_WRITER.writeValueAsBytes(config));
+        } catch (JsonProcessingException e) {
+            System.out.println("Failed to write to file");
+            return;
+        }
+        if (scheduledWrite != null) scheduledWrite.cancel(false);
+        scheduledWrite = executor.schedule(this::write, quietPeriodMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void write() {
+        byte[] bytes = pending.getAndSet(null);
+        if (bytes == null) return;
+        try {
+            AtomicFiles.write(file, bytes);
+        } catch (IOException e) {
+            System.out.println("Failed to write to file");
+        }
+    }
+
+    /**
+     * Writes any outstanding change straight away and stops the background writer
+     */
+    public void close() {
+        executor.shutdownNow();
+        write();
+    }
+}
@@ -1,59 +1,222 @@
 package org.cdntrust.minish.kidscamp.scoreboard;
 
-import java.util.Observable;
+import javafx.beans.InvalidationListener;
+import javafx.beans.property.*;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.IngestionLimits;
 
-public class Configuration extends Observable {
-    private double fontSize;
-    private double fontOutlineProportion;
-    private String selectedFontFamily;
-    private boolean listeningForNetworkChanges;
+public class Configuration {
+    public static final String SCORE_STORAGE_JSON = "json";
+    public static final String SCORE_STORAGE_MAPPED = "mapped";
+    public static final String RENDERER_CHART = "chart";
+    public static final String RENDERER_CANVAS = "canvas";
+
+    private final DoubleProperty fontSize = new SimpleDoubleProperty();
+    private final DoubleProperty fontOutlineProportion = new SimpleDoubleProperty();
+    private final StringProperty selectedFontFamily = new SimpleStringProperty();
+    private final BooleanProperty listeningForNetworkChanges = new SimpleBooleanProperty();
+    private final DoubleProperty renderFrameRate = new SimpleDoubleProperty(60);
+    private final StringProperty scoreStorage = new SimpleStringProperty(SCORE_STORAGE_JSON);
+    private final StringProperty leaderAddress = new SimpleStringProperty();
+    private final StringProperty renderer = new SimpleStringProperty(RENDERER_CHART);
+    private final StringProperty advertisedInterface = new SimpleStringProperty();
+    private final IntegerProperty maxChangesPerSecond = new SimpleIntegerProperty(IngestionLimits.DEFAULT_CHANGES_PER_SECOND);
+    private final IntegerProperty maxChangesPerBatch = new SimpleIntegerProperty(IngestionLimits.DEFAULT_MAX_CHANGES_PER_BATCH);
+    private final IntegerProperty maxPointsPerChange = new SimpleIntegerProperty(IngestionLimits.DEFAULT_MAX_POINTS_PER_CHANGE);
 
     public Configuration() {}
 
     public Configuration(double fontSize, double fontOutlineProportion, String selectedFontFamily, boolean listeningForNetworkChanges) {
-        this.fontSize = fontSize;
-        this.fontOutlineProportion = fontOutlineProportion;
-        this.selectedFontFamily = selectedFontFamily;
-        this.listeningForNetworkChanges = listeningForNetworkChanges;
+        setFontSize(fontSize);
+        setFontOutlineProportion(fontOutlineProportion);
+        setSelectedFontFamily(selectedFontFamily);
+        setListeningForNetworkChanges(listeningForNetworkChanges);
+    }
+
+    /**
+     * Registers a listener to be told whenever any setting changes
+     */
+    public void addListener(InvalidationListener listener) {
+        fontSize.addListener(listener);
+        fontOutlineProportion.addListener(listener);
+        selectedFontFamily.addListener(listener);
+        listeningForNetworkChanges.addListener(listener);
+        renderFrameRate.addListener(listener);
+        scoreStorage.addListener(listener);
+        leaderAddress.addListener(listener);
+        renderer.addListener(listener);
+        advertisedInterface.addListener(listener);
+        maxChangesPerSecond.addListener(listener);
+        maxChangesPerBatch.addListener(listener);
+        maxPointsPerChange.addListener(listener);
     }
 
     public double getFontSize() {
-        return fontSize;
+        return fontSize.get();
     }
 
     public void setFontSize(double fontSize) {
-        this.fontSize = fontSize;
-        this.setChanged();
-        this.notifyObservers();
+        this.fontSize.set(fontSize);
+    }
+
+    public DoubleProperty fontSizeProperty() {
+        return fontSize;
     }
 
     public double getFontOutlineProportion() {
-        return fontOutlineProportion;
+        return fontOutlineProportion.get();
     }
 
     public void setFontOutlineProportion(double fontOutlineProportion) {
-        this.fontOutlineProportion = fontOutlineProportion;
-        this.setChanged();
-        this.notifyObservers();
+        this.fontOutlineProportion.set(fontOutlineProportion);
+    }
+
+    public DoubleProperty fontOutlineProportionProperty() {
+        return fontOutlineProportion;
     }
 
     public String getSelectedFontFamily() {
-        return selectedFontFamily;
+        return selectedFontFamily.get();
     }
 
     public void setSelectedFontFamily(String selectedFontFamily) {
-        this.selectedFontFamily = selectedFontFamily;
-        this.setChanged();
-        this.notifyObservers();
+        this.selectedFontFamily.set(selectedFontFamily);
+    }
+
+    public StringProperty selectedFontFamilyProperty() {
+        return selectedFontFamily;
     }
 
     public boolean isListeningForNetworkChanges() {
-        return listeningForNetworkChanges;
+        return listeningForNetworkChanges.get();
     }
 
     public void setListeningForNetworkChanges(boolean listeningForNetworkChanges) {
-        this.listeningForNetworkChanges = listeningForNetworkChanges;
-        this.setChanged();
-        this.notifyObservers();
+        this.listeningForNetworkChanges.set(listeningForNetworkChanges);
+    }
+
+    public BooleanProperty listeningForNetworkChangesProperty() {
+        return listeningForNetworkChanges;
+    }
+
+    public double getRenderFrameRate() {
+        return renderFrameRate.get();
+    }
+
+    public void setRenderFrameRate(double renderFrameRate) {
+        this.renderFrameRate.set(renderFrameRate);
+    }
+
+    public DoubleProperty renderFrameRateProperty() {
+        return renderFrameRate;
+    }
+
+    /**
+     * @return How scores are saved: "json" to rewrite teamScores.json, or "mapped" to update a memory-mapped
+     * binary file in place (teamScores.json is then only refreshed occasionally, for people to read)
+     */
+    public String getScoreStorage() {
+        return scoreStorage.get();
+    }
+
+    public void setScoreStorage(String scoreStorage) {
+        this.scoreStorage.set(scoreStorage);
+    }
+
+    public StringProperty scoreStorageProperty() {
+        return scoreStorage;
+    }
+
+    /**
+     * @return <tt>host</tt> or <tt>host:port</tt> of another scoreboard to mirror the scores of, making this one a
+     * read-only display; or null for this scoreboard to keep its own scores (and serve them to any followers)
+     */
+    public String getLeaderAddress() {
+        return leaderAddress.get();
+    }
+
+    public void setLeaderAddress(String leaderAddress) {
+        this.leaderAddress.set(leaderAddress);
+    }
+
+    public StringProperty leaderAddressProperty() {
+        return leaderAddress;
+    }
+
+    /**
+     * @return How the scores are drawn: "chart" for the JavaFX bar chart, or "canvas" to draw them directly,
+     * which keeps up with far more teams
+     */
+    public String getRenderer() {
+        return renderer.get();
+    }
+
+    public void setRenderer(String renderer) {
+        this.renderer.set(renderer);
+    }
+
+    public StringProperty rendererProperty() {
+        return renderer;
+    }
+
+    /**
+     * @return Name of the network interface whose address is shown for sending score changes to, or null to pick
+     * the one most likely to be on the camp network
+     */
+    public String getAdvertisedInterface() {
+        return advertisedInterface.get();
+    }
+
+    public void setAdvertisedInterface(String advertisedInterface) {
+        this.advertisedInterface.set(advertisedInterface);
+    }
+
+    public StringProperty advertisedInterfaceProperty() {
+        return advertisedInterface;
+    }
+
+    /**
+     * @return Most score changes taken per second from any one client (or from the change files) before it is told
+     * to slow down
+     */
+    public int getMaxChangesPerSecond() {
+        return maxChangesPerSecond.get();
+    }
+
+    public void setMaxChangesPerSecond(int maxChangesPerSecond) {
+        this.maxChangesPerSecond.set(maxChangesPerSecond);
+    }
+
+    public IntegerProperty maxChangesPerSecondProperty() {
+        return maxChangesPerSecond;
+    }
+
+    /**
+     * @return Most score changes in one request or change file
+     */
+    public int getMaxChangesPerBatch() {
+        return maxChangesPerBatch.get();
+    }
+
+    public void setMaxChangesPerBatch(int maxChangesPerBatch) {
+        this.maxChangesPerBatch.set(maxChangesPerBatch);
+    }
+
+    public IntegerProperty maxChangesPerBatchProperty() {
+        return maxChangesPerBatch;
+    }
+
+    /**
+     * @return Most points one change can add or take away
+     */
+    public int getMaxPointsPerChange() {
+        return maxPointsPerChange.get();
+    }
+
+    public void setMaxPointsPerChange(int maxPointsPerChange) {
+        this.maxPointsPerChange.set(maxPointsPerChange);
+    }
+
+    public IntegerProperty maxPointsPerChangeProperty() {
+        return maxPointsPerChange;
     }
 }
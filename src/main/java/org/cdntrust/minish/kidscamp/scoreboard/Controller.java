@@ -1,41 +1,70 @@
 package org.cdntrust.minish.kidscamp.scoreboard;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import javafx.beans.property.ObjectProperty;
-import javafx.beans.property.SimpleObjectProperty;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
-import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
-import javafx.geometry.Bounds;
-import javafx.scene.Group;
+import javafx.geometry.Pos;
 import javafx.scene.Node;
+import javafx.scene.Scene;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.layout.AnchorPane;
+import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
+import javafx.util.Duration;
+import javafx.util.StringConverter;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ChangePointsServer;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.DaemonThreadFactory;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.FileWatcher;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.IngestionLimits;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.NetworkAddresses;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.Roster;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreboardEngine;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreboardMetrics;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.StartupReport;
 
 import java.io.*;
 import java.net.*;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Controller implements Initializable {
 
-    private static final String SAVE_FILE_NAME = "teamScores.json";
     private static final String CONFIG_FILE_NAME = "config.json";
-    private static final String CHANGES_FILE_NAME = "changesFromAPI.json";
+    private static final int POINTS_PER_CLICK = 10;
+    private static final long CONFIG_WRITE_DELAY_MS = 500;
     private static final String DEFAULT_FONT_FAMILY = Font.getDefault().getFamily();
+    // Selector entry for advertising whichever interface looks best
+    private static final String AUTOMATIC_INTERFACE = "";
 
     private Configuration config;
+    private ConfigPersister configPersister;
+
+    private ScoreboardEngine engine;
+    private RenderScheduler renderScheduler;
+    // For slow lookups that shouldn't hold up the display
+    private final ExecutorService background = Executors.newSingleThreadExecutor(new DaemonThreadFactory("display-background"));
+
+    private FileWatcher rosterWatcher;
+    private List<String> appliedRoster = Collections.emptyList();
 
     @FXML
     private BarChart<String, Number> barChart;
@@ -45,7 +74,10 @@ public class Controller implements Initializable {
 
     @FXML
     private Button plusFontSizeButton, minusFontSizeButton, plusFontOutlineButton, minusFontOutlineButton;
-    private ObjectProperty<Font> fontProperty;
+    private LabelStyle labelStyle;
+
+    @FXML
+    private GridPane teamButtonsPane;
 
     @FXML
     private GridPane settingsGridPane;
@@ -59,23 +91,26 @@ public class Controller implements Initializable {
     @FXML
     private Text ipAddressLabel;
 
-    private List<Text> textLabels = new ArrayList<>();
+    @FXML
+    private ComboBox<String> networkInterfaceSelector;
+    private final NetworkAddresses networkAddresses = new NetworkAddresses();
+    // As last listed, or null until they have been
+    private List<NetworkAddresses.Candidate> interfaces;
+    private final Map<String, NetworkAddresses.Candidate> interfacesByName = new HashMap<>();
+
+    @FXML
+    private CheckBox showMetricsCheckbox;
+
+    @FXML
+    private Label metricsOverlay;
+    private Timeline metricsRefresh;
+
+    private BarLabelManager labelManager;
+    private CanvasScoreRenderer canvasRenderer;
 
     private XYChart.Series<String, Number> teamData;
-    private String[] teams = {"Blue Boys", "Green Boys", "Orange Boys", "Red Boys", "Yellow Boys", "Blue Girls", "Green Girls", "Orange Girls", "Red Girls", "Yellow Girls"};
-
-    private StringProperty[] stringProps = new SimpleStringProperty[] {
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-            new SimpleStringProperty(""),
-    };
+    private final List<XYChart.Data<String, Number>> barsById = new ArrayList<>();
+    private final List<String> barColoursById = new ArrayList<>();
 
     /**
      * Called to initialize a controller after its root element has been
@@ -89,290 +124,440 @@ public class Controller implements Initializable {
     public void initialize(URL location, ResourceBundle resources) {
         // Load config file if one exists
         readConfigFile();
-        fontProperty = new SimpleObjectProperty<>(new Font(config.getSelectedFontFamily(), config.getFontSize()));
-        listenForNetworkChangesCheckbox.setSelected(config.isListeningForNetworkChanges());
-        refreshIPLabel();
+        engine = new ScoreboardEngine(Paths.get(""), Configuration.SCORE_STORAGE_MAPPED.equals(config.getScoreStorage()));
+        StartupReport startup = engine.getMetrics().startup();
+        startup.mark("JavaFX start and configuration");
+
+        configPersister = new ConfigPersister(Paths.get(CONFIG_FILE_NAME), config, CONFIG_WRITE_DELAY_MS);
+        labelStyle = new LabelStyle(config);
+        labelManager = new BarLabelManager(labelStyle.fontProperty(), labelStyle.outlineWidthProperty());
+        if (Configuration.RENDERER_CANVAS.equals(config.getRenderer())) {
+            createCanvasRenderer();
+        }
 
         // Create bars for all teams
         teamData = new XYChart.Series<>();
         barChart.setData(FXCollections.observableArrayList());
         createBarChartAxes();
+        startup.mark("Scores and roster");
+
+        renderScheduler = new RenderScheduler(engine.getScoreStore(), config.getRenderFrameRate(), this::refreshChart, engine.getMetrics());
+        config.renderFrameRateProperty().addListener((observable, oldValue, newValue) -> renderScheduler.setFrameRate(newValue.doubleValue()));
+        createSettings();
+        if (isFollower()) {
+            // A read-only display: scores only change on the leading scoreboard
+            teamButtonsPane.setVisible(false);
+            listenForNetworkChangesCheckbox.setDisable(true);
+        }
+        createMetricsOverlay();
+        startup.mark("Board set up");
 
-        config.addObserver((o, arg) -> {
-            writeConfigFile();
+        // Everything else can wait until the scores are on screen
+        afterFirstFrame(() -> {
+            startup.markReady("First frame");
+            startDeferred(startup);
         });
+    }
 
-        fontFamilySelector.itemsProperty().setValue(FXCollections.observableArrayList(Font.getFamilies()));
+    /**
+     * Wires up the settings pane. Until the font list has loaded, the font selector only offers the current font.
+     */
+    private void createSettings() {
+        fontFamilySelector.getItems().setAll(config.getSelectedFontFamily());
         fontFamilySelector.getSelectionModel().select(config.getSelectedFontFamily());
+        networkInterfaceSelector.setConverter(new StringConverter<String>() {
+            @Override
+            public String toString(String name) {
+                if (name == null || AUTOMATIC_INTERFACE.equals(name)) return "Automatic";
+                NetworkAddresses.Candidate candidate = interfacesByName.get(name);
+                return candidate == null ? name + " (not connected)" : candidate.toString();
+            }
+
+            @Override
+            public String fromString(String text) {
+                return text;
+            }
+        });
+        String chosenInterface = config.getAdvertisedInterface();
+        networkInterfaceSelector.getItems().setAll(AUTOMATIC_INTERFACE);
+        if (chosenInterface != null) networkInterfaceSelector.getItems().add(chosenInterface);
+        networkInterfaceSelector.getSelectionModel().select(chosenInterface == null ? AUTOMATIC_INTERFACE : chosenInterface);
+        listenForNetworkChangesCheckbox.setSelected(config.isListeningForNetworkChanges());
         settingsGridPane.visibleProperty().bind(showSettingsCheckbox.selectedProperty());
 
         plusFontSizeButton.setOnMouseClicked(event -> {
             config.setFontSize(config.getFontSize() * 1.075);
-            fontProperty.setValue(new Font(config.getSelectedFontFamily(), config.getFontSize()));
         });
 
         minusFontSizeButton.setOnMouseClicked(event -> {
             config.setFontSize(config.getFontSize() * 0.925);
-            fontProperty.setValue(new Font(config.getSelectedFontFamily(), config.getFontSize()));
         });
 
         plusFontOutlineButton.setOnMouseClicked(event -> {
             config.setFontOutlineProportion(config.getFontOutlineProportion() * 1.075);
-            refreshAllFontOutlines();
         });
 
         minusFontOutlineButton.setOnMouseClicked(event -> {
             config.setFontOutlineProportion(config.getFontOutlineProportion() * 0.925);
-            refreshAllFontOutlines();
         });
 
         fontFamilySelector.valueProperty().addListener((observable, oldValue, newValue) -> {
-            config.setSelectedFontFamily(newValue);
-            fontProperty.setValue(new Font(config.getSelectedFontFamily(), config.getFontSize()));
+            // Briefly null while the font list is swapped in
+            if (newValue != null) config.setSelectedFontFamily(newValue);
+        });
+
+        networkInterfaceSelector.valueProperty().addListener((observable, oldValue, newValue) -> {
+            // Briefly null while the interface list is swapped in
+            if (newValue == null) return;
+            config.setAdvertisedInterface(AUTOMATIC_INTERFACE.equals(newValue) ? null : newValue);
+            refreshIPLabel();
         });
 
         listenForNetworkChangesCheckbox.selectedProperty().addListener(((observable, oldValue, newValue) -> {
             config.setListeningForNetworkChanges(newValue);
             refreshIPLabel();
+            // Pick up anything that arrived while we weren't listening
+            engine.requestIngestion();
         }));
-
-        createCheckForNetworkChangesTask();
     }
 
-    private void refreshIPLabel(){
-        if(!config.isListeningForNetworkChanges()) {
-            ipAddressLabel.setText("Not listening on network");
-        } else {
-            try(final DatagramSocket socket = new DatagramSocket()){
-                socket.connect(InetAddress.getByName("8.8.8.8"), 10002);
-                String ip = socket.getLocalAddress().getHostAddress();
-                // This has the very bold assumption that the accompanying web API is running on port 15000 and uses the following endpoint URL
-                ipAddressLabel.setText(ip + ":15000/changepoints");
-            } catch (SocketException e) {
-                ipAddressLabel.setText("Socket error");
-            } catch (UnknownHostException e) {
-                ipAddressLabel.setText("Can't get host IP");
+    /**
+     * Runs once the first frame has been laid out and shown
+     */
+    private void afterFirstFrame(Runnable action) {
+        // The bar chart may be swapped out for the canvas, but the buttons are always there
+        teamButtonsPane.sceneProperty().addListener(new ChangeListener<Scene>() {
+            @Override
+            public void changed(ObservableValue<? extends Scene> observable, Scene oldScene, Scene scene) {
+                if (scene == null) return;
+                teamButtonsPane.sceneProperty().removeListener(this);
+                scene.addPostLayoutPulseListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        scene.removePostLayoutPulseListener(this);
+                        // Queued behind the rest of this pulse, so runs once the frame has gone to the screen
+                        Platform.runLater(action);
+                    }
+                });
             }
+        });
+    }
+
+    /**
+     * Starts everything not needed to show the scores: the network endpoints, listing the network interfaces, the
+     * font list and watching the roster. The slow parts run in the background.
+     */
+    private void startDeferred(StartupReport startup) {
+        if (!isFollower()) {
+            long started = System.currentTimeMillis();
+            applyIngestionLimits();
+            InvalidationListener limitsListener = observable -> applyIngestionLimits();
+            config.maxChangesPerSecondProperty().addListener(limitsListener);
+            config.maxChangesPerBatchProperty().addListener(limitsListener);
+            config.maxPointsPerChangeProperty().addListener(limitsListener);
+            engine.startIngestion(config::isListeningForNetworkChanges);
+            startup.recordSince("Network endpoints", started);
         }
+        refreshIPLabel();
+        long interfacesStarted = System.currentTimeMillis();
+        networkAddresses.addListener(found -> Platform.runLater(() -> {
+            boolean first = interfaces == null;
+            showInterfaces(found);
+            if (first) startup.recordSince("Network interfaces", interfacesStarted);
+        }));
+        networkAddresses.start();
+
+        long fontsStarted = System.currentTimeMillis();
+        background.execute(() -> {
+            List<String> families = Font.getFamilies();
+            Platform.runLater(() -> {
+                fontFamilySelector.getItems().setAll(families);
+                fontFamilySelector.getSelectionModel().select(config.getSelectedFontFamily());
+                startup.recordSince("Font list", fontsStarted);
+            });
+        });
+
+        createWatchForRosterChangesTask();
     }
 
-    private void createCheckForNetworkChangesTask() {
-        Timer timer = new Timer();
-        timer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                handleScoreChangesFromFile();
+    /**
+     * Times CSS and layout in every pulse, and shows all the metrics over the chart while "Show metrics" is ticked
+     */
+    private void createMetricsOverlay() {
+        ScoreboardMetrics metrics = engine.getMetrics();
+        long[] layoutStart = new long[1];
+        teamButtonsPane.sceneProperty().addListener((observable, oldScene, scene) -> {
+            if (scene == null) return;
+            scene.addPreLayoutPulseListener(() -> layoutStart[0] = System.nanoTime());
+            scene.addPostLayoutPulseListener(() -> metrics.layoutTime().recordSince(layoutStart[0]));
+        });
+
+        metricsRefresh = new Timeline(new KeyFrame(Duration.seconds(1), event -> metricsOverlay.setText(metrics.describe())));
+        metricsRefresh.setCycleCount(Timeline.INDEFINITE);
+        metricsOverlay.visibleProperty().bind(showMetricsCheckbox.selectedProperty());
+        showMetricsCheckbox.selectedProperty().addListener((observable, oldValue, showing) -> {
+            if (showing) {
+                metricsOverlay.setText(metrics.describe());
+                metricsRefresh.play();
+            } else {
+                metricsRefresh.stop();
             }
-        }, 1000, 1000);
+        });
     }
 
-    private void readConfigFile() {
-        try {
-            ObjectMapper mapper = new ObjectMapper();
-            config = mapper.readValue(new File(CONFIG_FILE_NAME), Configuration.class);
-        } catch (Exception e) {
-            config = new Configuration(50.0, 0.03, DEFAULT_FONT_FAMILY, true);
-        }
+    /**
+     * Stops listening for changes and saves anything not yet written. Called when the application is closing.
+     */
+    public void shutdown() {
+        if (rosterWatcher != null) rosterWatcher.close();
+        if (engine != null) engine.close();
+        if (configPersister != null) configPersister.close();
+        background.shutdownNow();
+        networkAddresses.close();
     }
 
-    private void writeConfigFile() {
+    private void applyIngestionLimits() {
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            mapper.writeValue(new File(CONFIG_FILE_NAME), config);
-        } catch (Exception e) {
-            System.out.println("Failed to write to file");
+            engine.setIngestionLimits(new IngestionLimits(config.getMaxChangesPerSecond(), config.getMaxChangesPerBatch(),
+                    config.getMaxPointsPerChange(), IngestionLimits.DEFAULT_QUEUE_CAPACITY));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring ingestion limits from " + CONFIG_FILE_NAME + ": " + e.getMessage());
         }
     }
 
     /**
-     * Creates and appends all bar chart axes, then adds all teams
+     * Shows where to send score changes, from the network interfaces as last listed
      */
-    private void createBarChartAxes() {
-        barChart.getData().add(teamData);
-        try {
-            // Create data series for boys and girls
-            for (int i = 0; i < teams.length; i++) {
-                final XYChart.Data<String, Number> data = new XYChart.Data<>(teams[i], readScoreFromFile(teams[i]));
-                data.nodeProperty().addListener((ov, oldNode, node) -> {
-                    if (node != null) {
-                        displayLabelForData(data);
-                    }
-                });
-                stringProps[i].setValue(data.getYValue() + "");
-                teamData.getData().add(data);
+    private void refreshIPLabel() {
+        if (isFollower()) {
+            ipAddressLabel.setText("Showing scores from " + config.getLeaderAddress());
+        } else if(!config.isListeningForNetworkChanges()) {
+            ipAddressLabel.setText("Not listening on network");
+        } else if (interfaces == null) {
+            ipAddressLabel.setText("Finding IP address...");
+        } else {
+            NetworkAddresses.Candidate advertised = NetworkAddresses.choose(interfaces, config.getAdvertisedInterface());
+            if (advertised == null) {
+                ipAddressLabel.setText("No network connection");
+            } else if (engine.isHostingEndpoint()) {
+                ipAddressLabel.setText(advertised.getUrlHost() + ":" + ChangePointsServer.DEFAULT_PORT + ChangePointsServer.PATH);
+            } else {
+                // Couldn't host the endpoint ourselves, so assume the separate web API is running and writing changes to file
+                ipAddressLabel.setText(advertised.getUrlHost() + ":15000/changepoints");
             }
-        } catch (IOException e) {
-            System.out.println("Failed to read file data");
         }
     }
 
     /**
-     * Reads the score for a particular team from specified save file
-     * @param team Name of team
+     * Offers the interfaces just listed in the interface selector, keeping the chosen one even while it is down
      */
-    private int readScoreFromFile(String teamName) throws IOException {
-        JsonNode node = readFileToNode(SAVE_FILE_NAME);
-        JsonNode team = node.get(teamName);
-        if(team == null) return 0;
-        return team.asInt(0);
-    }
-
-    private JsonNode readFileToNode(String filename) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        File file = Paths.get(filename).toFile();
-        if (!file.exists()) {
-            boolean success = file.createNewFile();
-            if (!success) {
-                throw new IOException(String.format("Team score file '%s' was not found, and could not be created", SAVE_FILE_NAME));
-            }
+    private void showInterfaces(List<NetworkAddresses.Candidate> found) {
+        interfaces = found;
+        interfacesByName.clear();
+        List<String> names = new ArrayList<>();
+        names.add(AUTOMATIC_INTERFACE);
+        for (NetworkAddresses.Candidate candidate : found) {
+            interfacesByName.put(candidate.getInterfaceName(), candidate);
+            names.add(candidate.getInterfaceName());
         }
-        return mapper.readTree(file);
+        String chosen = config.getAdvertisedInterface();
+        if (chosen != null && !interfacesByName.containsKey(chosen)) names.add(chosen);
+        networkInterfaceSelector.getItems().setAll(names);
+        networkInterfaceSelector.getSelectionModel().select(chosen == null ? AUTOMATIC_INTERFACE : chosen);
+        refreshIPLabel();
     }
 
     /**
-     * Check for any changes in the file that is modified by API to receive network queries
+     * Draws the scores on a canvas in place of the bar chart, for boards with too many teams for the chart to keep up
      */
-    private void handleScoreChangesFromFile() {
-        if (!config.isListeningForNetworkChanges()) return;
+    private void createCanvasRenderer() {
+        canvasRenderer = new CanvasScoreRenderer(labelStyle.fontProperty(), labelStyle.outlineWidthProperty());
+        AnchorPane.setTopAnchor(canvasRenderer, AnchorPane.getTopAnchor(barChart));
+        AnchorPane.setBottomAnchor(canvasRenderer, AnchorPane.getBottomAnchor(barChart));
+        AnchorPane.setLeftAnchor(canvasRenderer, AnchorPane.getLeftAnchor(barChart));
+        AnchorPane.setRightAnchor(canvasRenderer, AnchorPane.getRightAnchor(barChart));
+        List<Node> siblings = ((Pane) barChart.getParent()).getChildren();
+        siblings.set(siblings.indexOf(barChart), canvasRenderer);
+    }
+
+    private boolean isFollower() {
+        return config.getLeaderAddress() != null && !config.getLeaderAddress().isEmpty();
+    }
+
+    private void readConfigFile() {
         try {
-            JsonNode tree = readFileToNode(CHANGES_FILE_NAME);
-            if(tree == null) return;
-            tree.fields().forEachRemaining(node -> {
-                if (Arrays.asList(teams).contains(node.getKey())) {
-                    int changeAmount = node.getValue().asInt(0);
-                    modifyPoints(node.getKey(), changeAmount);
-                }
-            });
-            PrintWriter writer = new PrintWriter(new File(CHANGES_FILE_NAME));
-            writer.print("");
-            writer.close();
-        } catch (IOException e) {
-            //e.printStackTrace();
+            config = ConfigPersister.CONFIG_READER.readValue(new File(CONFIG_FILE_NAME));
+        } catch (Exception e) {
+            config = new Configuration(50.0, 0.03, DEFAULT_FONT_FAMILY, true);
         }
     }
 
     /**
-     * Writes all current scores to a file
+     * Creates and appends all bar chart axes, then adds all teams
      */
-    private void writeScoresToFile() throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectNode node = mapper.createObjectNode();
-
-        for (XYChart.Data data : teamData.getData()) {
-            node.put(teams[teamData.getData().indexOf(data)], (int)data.getYValue());
+    private void createBarChartAxes() {
+        barChart.getData().add(teamData);
+        if (isFollower()) {
+            try {
+                engine.follow(config.getLeaderAddress());
+            } catch (IllegalArgumentException e) {
+                System.out.println("Not following another scoreboard: " + e.getMessage());
+            }
+        } else {
+            engine.start();
+        }
+        try {
+            applyRoster(Roster.readOrCreate(Paths.get(ScoreboardEngine.ROSTER_FILE_NAME)));
+        } catch (IOException e) {
+            System.out.println("Failed to read roster, using the default teams: " + e.getMessage());
+            applyRoster(Roster.defaultRoster());
         }
-
-        String str = mapper.writeValueAsString(node);
-
-        BufferedWriter writer = new BufferedWriter(new FileWriter(SAVE_FILE_NAME));
-        writer.write(str);
-
-        writer.close();
     }
 
     /**
-     * Method to modify the points of some team by some amount
-     *
-     * @param team Name of team to modify points of
-     * @param change Amount to modify points by (can be negative to remove points)
+     * Reloads the roster whenever its file is edited, so teams can be added, removed, reordered or recoloured
+     * without restarting
      */
-    private void modifyPoints(String team, int change) {
-        for (XYChart.Data<String, Number> data : teamData.getData()) {
-            if(data.getXValue().equals(team)) {
-                data.setYValue((int)data.getYValue() + change);
-                displayLabelForData(data);
-                stringProps[teamData.getData().indexOf(data)].setValue(data.getYValue() + "");
-                try {
-                    writeScoresToFile();
-                } catch (IOException e) {
-                    System.out.println("Failed to write to file");
-                }
+    private void createWatchForRosterChangesTask() {
+        rosterWatcher = new FileWatcher(Paths.get(ScoreboardEngine.ROSTER_FILE_NAME), () -> {
+            try {
+                Roster roster = Roster.readOrCreate(Paths.get(ScoreboardEngine.ROSTER_FILE_NAME));
+                Platform.runLater(() -> applyRoster(roster));
+            } catch (IOException e) {
+                System.out.println("Failed to reload roster, keeping the current teams: " + e.getMessage());
             }
-        }
+        });
+        rosterWatcher.start();
     }
 
     /**
-     * FXML injected method to handle adding (or removing) points based on the button that was pressed
-     * @param e The event created by the button click
+     * Shows a bar and a pair of buttons for every team on the roster, in roster order. Teams that have dropped off
+     * the roster are hidden, but keep their scores in case they come back.
      */
-    @FXML
-    private void changeTen(ActionEvent e) {
-        Button button = (Button)e.getSource();
-        boolean adding = button.getText().startsWith("+");
-        boolean isBoys = button.idProperty().get().charAt(1) == 'b';
-
-        String colour = "";
-        switch (button.idProperty().get().charAt(0)) {
-            case 'b':
-                colour = "Blue";
-                break;
-            case 'g':
-                colour = "Green";
-                break;
-            case 'o':
-                colour = "Orange";
-                break;
-            case 'r':
-                colour = "Red";
-                break;
-            case 'y':
-                colour = "Yellow";
-                break;
+    private void applyRoster(Roster roster) {
+        List<String> signature = new ArrayList<>();
+        for (Roster.Team team : roster.getTeams()) {
+            signature.add(team.getName() + "\u0000" + team.getColour());
+        }
+        if (signature.equals(appliedRoster)) return;
+        appliedRoster = signature;
+
+        List<XYChart.Data<String, Number>> shownBars = new ArrayList<>();
+        List<Integer> shownIds = new ArrayList<>();
+        List<String> shownNames = new ArrayList<>();
+        List<String> shownColours = new ArrayList<>();
+        Set<String> shownTeams = new HashSet<>();
+        teamButtonsPane.getChildren().clear();
+        teamButtonsPane.getColumnConstraints().clear();
+
+        for (Roster.Team team : roster.getTeams()) {
+            String name = team.getName();
+            if (name == null || !shownTeams.add(name)) continue;
+
+            int teamId = engine.registerTeam(name);
+            addTeamButtons(shownIds.size(), teamId);
+            shownIds.add(teamId);
+            shownNames.add(name);
+            shownColours.add(checkColour(teamId, team.getColour()));
         }
 
-        modifyPoints(colour + " " + (isBoys ? "Boys" : "Girls"), adding ? 10 : -10);
+        if (canvasRenderer != null) {
+            canvasRenderer.setTeams(shownIds, shownNames, shownColours, engine.getScoreStore().snapshot());
+            return;
+        }
+        for (int i = 0; i < shownIds.size(); i++) {
+            int teamId = shownIds.get(i);
+            shownBars.add(getOrCreateBar(teamId));
+            setBarColour(teamId, shownColours.get(i));
+        }
+
+        if (!shownBars.equals(teamData.getData())) {
+            // Without animation, so bars being moved aren't still animating out while being added back in
+            boolean animated = barChart.getAnimated();
+            barChart.setAnimated(false);
+            teamData.getData().setAll(shownBars);
+            barChart.setAnimated(animated);
+        }
+    }
+
+    private XYChart.Data<String, Number> getOrCreateBar(int teamId) {
+        while (barsById.size() <= teamId) {
+            barsById.add(null);
+            barColoursById.add(null);
+        }
+        XYChart.Data<String, Number> data = barsById.get(teamId);
+        if (data == null) {
+            data = new XYChart.Data<>(engine.getTeamRegistry().nameOf(teamId), engine.getScoreStore().get(teamId));
+            data.nodeProperty().addListener((ov, oldNode, node) -> applyBarColour(teamId, node));
+            labelManager.attach(teamId, data);
+            barsById.set(teamId, data);
+        }
+        return data;
     }
 
     /**
-     * Dynamically creates and positions a label above the bar representing the data point
-     * Credit: https://stackoverflow.com/a/15375168
-     *
-     * @param data Data point to display value for
+     * @return The colour if it is one CSS understands, otherwise null so the team keeps its default colour
      */
-    private void displayLabelForData(XYChart.Data<String, Number> data) {
-        final Node node = data.getNode();
-        final Text dataText = new Text(data.getYValue() + "");
-        dataText.textProperty().bind(stringProps[teamData.getData().indexOf(data)]);
-        dataText.fontProperty().bind(fontProperty);
-        dataText.getStyleClass().add("outline");
-
-        node.parentProperty().addListener((ov, oldParent, parent) -> {
-            Group parentGroup = (Group) parent;
-            parentGroup.getChildren().add(dataText);
-        });
-
-        // Calculate bounds and set position
-        node.boundsInParentProperty().addListener((ov, oldBounds, bounds) -> {
-            updateLabelBounds(dataText, bounds);
-            refreshFontOutline(dataText);
-        });
-        dataText.fontProperty().addListener((observable, oldValue, newValue) -> {
-            updateLabelBounds(dataText, node.getBoundsInParent());
-            refreshFontOutline(dataText);
-        });
-
-        textLabels.add(dataText);
+    private String checkColour(int teamId, String colour) {
+        if (colour == null) return null;
+        try {
+            Color.web(colour);
+            return colour;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ignoring unknown colour '" + colour + "' for " + engine.getTeamRegistry().nameOf(teamId));
+            return null;
+        }
     }
 
-    private void updateLabelBounds(Text dataText, Bounds bounds) {
-        long yPosition = Math.round(
-                bounds.getMinY()
-                        + (bounds.getMaxY() - bounds.getMinY()) / 2
-        );
+    private void setBarColour(int teamId, String colour) {
+        barColoursById.set(teamId, colour);
+        applyBarColour(teamId, barsById.get(teamId).getNode());
+    }
 
-        dataText.setLayoutX(
-                Math.round(bounds.getMinX() + bounds.getWidth() / 2 - dataText.getLayoutBounds().getWidth() / 2)
-        );
-        dataText.setLayoutY(yPosition);
+    private void applyBarColour(int teamId, Node node) {
+        if (node == null) return;
+        String colour = barColoursById.get(teamId);
+        // With no colour of its own, the bar falls back to its .dataN.chart-bar style
+        node.setStyle(colour == null ? "" : "-fx-bar-fill: " + colour + ";");
     }
 
-    private void refreshFontOutline(Text dataText) {
-        dataText.setStyle(String.format("-fx-stroke-width: %f;", config.getFontSize() * config.getFontOutlineProportion()));
+    private void addTeamButtons(int column, int teamId) {
+        Button plusButton = new Button("+");
+        plusButton.setMnemonicParsing(false);
+        plusButton.setOnAction(event -> engine.applyDelta(teamId, POINTS_PER_CLICK, "button"));
+
+        Button minusButton = new Button("-");
+        minusButton.setMnemonicParsing(false);
+        minusButton.setPrefWidth(25.0);
+        minusButton.setOnAction(event -> engine.applyDelta(teamId, -POINTS_PER_CLICK, "button"));
+
+        HBox buttons = new HBox(5.0, plusButton, minusButton);
+        buttons.setAlignment(Pos.TOP_CENTER);
+
+        ColumnConstraints columnConstraints = new ColumnConstraints();
+        columnConstraints.setMinWidth(10.0);
+        columnConstraints.setPrefWidth(100.0);
+        columnConstraints.setHgrow(Priority.SOMETIMES);
+        teamButtonsPane.getColumnConstraints().add(columnConstraints);
+        teamButtonsPane.add(buttons, column, 0);
     }
 
-    private void refreshAllFontOutlines() {
-        for (Text dataText : textLabels) {
-            refreshFontOutline(dataText);
+    /**
+     * Updates the bars of any team whose score has changed. Called by the render scheduler at most once per frame.
+     *
+     * @param scores Current score of every team
+     */
+    private void refreshChart(long[] scores) {
+        if (canvasRenderer != null) {
+            canvasRenderer.setScores(scores);
+            return;
+        }
+        for (int i = 0; i < barsById.size() && i < scores.length; i++) {
+            XYChart.Data<String, Number> data = barsById.get(i);
+            if (data != null && data.getYValue().longValue() != scores[i]) {
+                data.setYValue(scores[i]);
+                labelManager.setScore(i, scores[i]);
+            }
         }
     }
 }
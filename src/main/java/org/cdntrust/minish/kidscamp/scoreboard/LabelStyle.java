@@ -0,0 +1,32 @@
+package org.cdntrust.minish.kidscamp.scoreboard;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.binding.DoubleBinding;
+import javafx.beans.binding.ObjectBinding;
+import javafx.beans.value.ObservableDoubleValue;
+import javafx.beans.value.ObservableObjectValue;
+import javafx.scene.text.Font;
+
+/**
+ * Font and outline width of the score labels, worked out once whenever the settings they depend on change, and
+ * shared by every label through bindings
+ */
+public class LabelStyle {
+
+    private final ObjectBinding<Font> font;
+    private final DoubleBinding outlineWidth;
+
+    public LabelStyle(Configuration config) {
+        font = Bindings.createObjectBinding(() -> new Font(config.getSelectedFontFamily(), config.getFontSize()),
+                config.selectedFontFamilyProperty(), config.fontSizeProperty());
+        outlineWidth = config.fontSizeProperty().multiply(config.fontOutlineProportionProperty());
+    }
+
+    public ObservableObjectValue<Font> fontProperty() {
+        return font;
+    }
+
+    public ObservableDoubleValue outlineWidthProperty() {
+        return outlineWidth;
+    }
+}
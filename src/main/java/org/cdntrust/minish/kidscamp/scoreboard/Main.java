@@ -15,14 +15,20 @@ public class Main extends Application {
 
     @Override
     public void start(Stage primaryStage) throws Exception{
-        controller = new Controller();
-        Parent root = FXMLLoader.load(Objects.requireNonNull(getClass().getResource("/fxml/scoreboard.fxml")));
+        FXMLLoader loader = new FXMLLoader(Objects.requireNonNull(getClass().getResource("/fxml/scoreboard.fxml")));
+        Parent root = loader.load();
+        controller = loader.getController();
         root.getStylesheets().addAll(Objects.requireNonNull(getClass().getResource("/styles/styles.css")).toExternalForm());
         primaryStage.setTitle("KC Scoreboard");
         primaryStage.setScene(new Scene(root, 1280, 720));
         primaryStage.show();
     }
 
+    @Override
+    public void stop() {
+        if (controller != null) controller.shutdown();
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -0,0 +1,84 @@
+package org.cdntrust.minish.kidscamp.scoreboard;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreStore;
+import org.cdntrust.minish.kidscamp.scoreboard.engine.ScoreboardMetrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Applies score changes to the display at most once per frame, however many changes arrive in between.
+ * <p>
+ * The timer only runs while there is something to draw, so an idle board doesn't keep JavaFX pulsing.
+ */
+public class RenderScheduler {
+
+    private static final double DEFAULT_FRAME_RATE = 60;
+
+    private final ScoreStore scoreStore;
+    private final Consumer<long[]> render;
+    private final ScoreboardMetrics metrics;
+    private final AtomicBoolean renderRequested = new AtomicBoolean();
+    private final AnimationTimer timer;
+    private long minFrameIntervalNanos;
+    private long lastFrameNanos;
+    private long lastPulseNanos;
+    private long lastRenderedVersion = -1;
+
+    /**
+     * @param render Called on the FX thread with a snapshot of the scores, whenever they have changed
+     * @param metrics Records the time between pulses and how long each render takes
+     */
+    public RenderScheduler(ScoreStore scoreStore, double frameRate, Consumer<long[]> render, ScoreboardMetrics metrics) {
+        this.scoreStore = scoreStore;
+        this.render = render;
+        this.metrics = metrics;
+        setFrameRate(frameRate);
+        timer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onPulse(now);
+            }
+        };
+        scoreStore.subscribe(this::requestRender);
+    }
+
+    /**
+     * @param frameRate Maximum number of times per second to redraw; anything not positive means the default of 60
+     */
+    public void setFrameRate(double frameRate) {
+        minFrameIntervalNanos = (long) (1_000_000_000 / (frameRate > 0 ? frameRate : DEFAULT_FRAME_RATE));
+    }
+
+    /**
+     * Asks for the display to be brought up to date on an upcoming frame. Safe to call from any thread.
+     */
+    public void requestRender() {
+        if (renderRequested.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                lastPulseNanos = 0;
+                timer.start();
+            });
+        }
+    }
+
+    private void onPulse(long now) {
+        // Only while we are waiting on frames, as the timer is stopped in between
+        if (lastPulseNanos != 0) metrics.pulseInterval().record(now - lastPulseNanos);
+        lastPulseNanos = now;
+        if (now - lastFrameNanos < minFrameIntervalNanos) return;
+        // Clear the request before taking the snapshot, so any change made after it asks for another frame
+        renderRequested.set(false);
+        timer.stop();
+        lastFrameNanos = now;
+
+        long version = scoreStore.getVersion();
+        if (version == lastRenderedVersion) return;
+        lastRenderedVersion = version;
+        long start = System.nanoTime();
+        render.accept(scoreStore.snapshot());
+        metrics.chartUpdateTime().recordSince(start);
+    }
+}
@@ -0,0 +1,167 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Small in-process HTTP server accepting score changes, so the scoreboard no longer relies on a separate web API.
+ * <p>
+ * <tt>POST /changepoints</tt> with a JSON object of team name to points, e.g. <tt>{"Red Girls": 10}</tt>.
+ * Clients that retry should give each batch an id, in an <tt>Idempotency-Key</tt> header or a <tt>requestId</tt>
+ * field, so a batch that arrives twice is only applied once.
+ * Changes go through the {@link IngestionQueue}: a client sending too many gets <tt>429 Too Many Requests</tt>, and
+ * when the queue is full everyone gets <tt>503 Service Unavailable</tt>, both with a <tt>Retry-After</tt> header.
+ * Requests are handled by a fixed size worker pool; once its queue is full the accepting thread handles requests
+ * itself, which slows down new connections rather than piling up work.
+ */
+public class ChangePointsServer {
+
+    public static final int DEFAULT_PORT = 15000;
+    public static final String PATH = "/changepoints";
+    public static final String REQUEST_ID_HEADER = "Idempotency-Key";
+
+    private static final int WORKER_THREADS = 4;
+    private static final int WORKER_QUEUE_SIZE = 1024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final Predicate<String> isKnownTeam;
+    private final IngestionQueue ingestionQueue;
+    private final BooleanSupplier accepting;
+    private final ScoreboardMetrics metrics;
+    private HttpServer server;
+    private ThreadPoolExecutor workers;
+
+    /**
+     * @param isKnownTeam Whether a team name can be scored; changes for other names are ignored
+     * @param ingestionQueue Takes each request's changes, limited by the address they came from
+     * @param accepting Whether changes are currently being accepted at all
+     * @param metrics Records request handling times and changes turned away
+     */
+    public ChangePointsServer(Predicate<String> isKnownTeam, IngestionQueue ingestionQueue, BooleanSupplier accepting, ScoreboardMetrics metrics) {
+        this.isKnownTeam = isKnownTeam;
+        this.ingestionQueue = ingestionQueue;
+        this.accepting = accepting;
+        this.metrics = metrics;
+    }
+
+    public void start(int port) throws IOException {
+        // The JDK server leaves Nagle's algorithm on, which adds ~40ms to every small response on a kept-alive connection
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(WORKER_QUEUE_SIZE), new DaemonThreadFactory("http-worker"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(PATH, this::handleChangePoints);
+        server.setExecutor(workers);
+        server.start();
+    }
+
+    /**
+     * Serves another endpoint from the same server and worker pool. Only valid once started.
+     */
+    public void addHandler(String path, HttpHandler handler) {
+        server.createContext(path, handler);
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+        if (workers != null) workers.shutdownNow();
+    }
+
+    private void handleChangePoints(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "{\"error\":\"Use POST\"}");
+                return;
+            }
+            if (!accepting.getAsBoolean()) {
+                metrics.deltaDropped();
+                respond(exchange, 503, "{\"error\":\"Scoreboard is not listening for network changes\"}");
+                return;
+            }
+
+            DeltaBatch batch;
+            try {
+                batch = DeltaParser.parseBatch(readBody(exchange.getRequestBody()), isKnownTeam);
+            } catch (IOException e) {
+                metrics.deltaRejected();
+                respond(exchange, 400, "{\"error\":\"Body must be a JSON object of team name to points\"}");
+                return;
+            }
+            String requestId = exchange.getRequestHeaders().getFirst(REQUEST_ID_HEADER);
+            if (requestId == null) requestId = batch.getRequestId();
+            String source = "api " + exchange.getRemoteAddress().getAddress().getHostAddress();
+            IngestionQueue.Admission admission = ingestionQueue.offer(source, batch.getChanges(), requestId, null, null);
+            switch (admission.getOutcome()) {
+                case DUPLICATE:
+                    // Already applied; answer as before so the client stops retrying
+                    respond(exchange, 200, "{\"applied\":0,\"duplicate\":true}");
+                    break;
+                case IN_PROGRESS:
+                    // Not applied yet, and might not be, so the client should keep retrying until it is
+                    respondRetryLater(exchange, 409, "A request with this id is still being applied", admission.getRetryAfterMs());
+                    break;
+                case TOO_LARGE:
+                    respond(exchange, 413, "{\"error\":\"At most " + ingestionQueue.getLimits().getMaxChangesPerBatch() + " changes per request\"}");
+                    break;
+                case RATE_LIMITED:
+                    respondRetryLater(exchange, 429, "Too many changes from this address", admission.getRetryAfterMs());
+                    break;
+                case OVERLOADED:
+                    respondRetryLater(exchange, 503, "Scoreboard is busy", admission.getRetryAfterMs());
+                    break;
+                default:
+                    // Queued rather than applied yet, but the scores will show them within moments
+                    respond(exchange, 200, "{\"applied\":" + admission.getQueued()
+                            + (admission.getRefused() > 0 ? ",\"refused\":" + admission.getRefused() : "") + "}");
+            }
+            metrics.ingestionLatency().recordSince(start);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private byte[] readBody(InputStream body) throws IOException {
+        byte[] buffer = new byte[1024];
+        int length = 0;
+        int read;
+        while ((read = body.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length > MAX_BODY_BYTES) throw new IOException("Request body too large");
+            if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void respondRetryLater(HttpExchange exchange, int status, String error, long retryAfterMs) throws IOException {
+        // Retry-After is in whole seconds; the exact wait is in the body for clients that want it
+        exchange.getResponseHeaders().set("Retry-After", String.valueOf((retryAfterMs + 999) / 1000));
+        respond(exchange, status, "{\"error\":\"" + error + "\",\"retryAfterMs\":" + retryAfterMs + "}");
+    }
+
+    private void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lossless handoff of score change batches from the web API.
+ * <p>
+ * Writers drop each batch into the spool directory as its own file: written under a name ending in
+ * <tt>.tmp</tt>, then renamed to end in <tt>.json</tt>. The scoreboard claims a batch by atomically moving it
+ * into the <tt>claimed</tt> directory, so a batch is only ever read once it is complete, and by exactly one reader.
+ * Claimed batches are deleted once applied, or moved to the <tt>rejected</tt> directory if they can't be parsed.
+ * <p>
+ * The old single changes file is still accepted, and is claimed the same way (the API simply recreates it on
+ * its next write), so nothing written to it between reading and clearing can be lost any more. As it is written in
+ * place rather than renamed into place, it is only claimed once it has looked the same (size and modification
+ * time) for {@value #LEGACY_SETTLE_MS}ms, so a half-written file is left for the writer to finish.
+ * <p>
+ * Delivery is at least once: a batch is only deleted after its changes have been applied, so if the scoreboard
+ * stops in between, the batch is still in <tt>claimed</tt> and is applied again on the next start. Writers that
+ * can't tolerate that should give batches a request id; within a run, a batch with an id already seen is not
+ * applied twice, but ids are not remembered across restarts.
+ */
+public class ChangeSpool {
+
+    private static final String BATCH_SUFFIX = ".json";
+    static final long LEGACY_SETTLE_MS = 500;
+
+    private final Path spoolDir;
+    private final Path claimedDir;
+    private final Path rejectedDir;
+    private final Path legacyFile;
+    private final AtomicLong claimCount = new AtomicLong();
+    private boolean recovered = false;
+    // How the legacy file looked at the last check, so it is only claimed once it has stopped changing
+    private long legacySize = -1;
+    private FileTime legacyModified;
+    private long legacyUnchangedSince;
+
+    public ChangeSpool(Path spoolDir, Path legacyFile) throws IOException {
+        this.spoolDir = spoolDir;
+        this.claimedDir = spoolDir.resolve("claimed");
+        this.rejectedDir = spoolDir.resolve("rejected");
+        this.legacyFile = legacyFile;
+        Files.createDirectories(claimedDir);
+        Files.createDirectories(rejectedDir);
+    }
+
+    public Path getSpoolDir() {
+        return spoolDir;
+    }
+
+    /**
+     * Claims every complete batch currently waiting. The first call also returns any batches that were claimed
+     * by a previous run but never completed (e.g. the application was closed mid-way)
+     *
+     * @return Paths of the claimed batch files, which now belong to the caller
+     */
+    public synchronized List<Path> claimPending() throws IOException {
+        List<Path> claimed = new ArrayList<>();
+        if (!recovered) {
+            recovered = true;
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(claimedDir)) {
+                leftovers.forEach(claimed::add);
+            }
+        }
+
+        try (DirectoryStream<Path> batches = Files.newDirectoryStream(spoolDir, "*" + BATCH_SUFFIX)) {
+            for (Path batch : batches) {
+                Path target = claim(batch);
+                if (target != null) claimed.add(target);
+            }
+        }
+
+        if (isLegacyFileSettled()) {
+            Path target = claim(legacyFile);
+            if (target != null) claimed.add(target);
+        }
+        return claimed;
+    }
+
+    /**
+     * @return Whether the legacy file has something in it that hasn't been claimed yet because it might still be
+     * being written; if so, check again shortly
+     */
+    public synchronized boolean isLegacyFileWaiting() {
+        return legacySize > 0;
+    }
+
+    private boolean isLegacyFileSettled() throws IOException {
+        long size;
+        FileTime modified;
+        try {
+            size = Files.size(legacyFile);
+            modified = Files.getLastModifiedTime(legacyFile);
+        } catch (NoSuchFileException e) {
+            size = -1;
+            modified = null;
+        }
+        long now = System.currentTimeMillis();
+        if (size != legacySize || !Objects.equals(modified, legacyModified)) {
+            legacySize = size;
+            legacyModified = modified;
+            legacyUnchangedSince = now;
+            return false;
+        }
+        if (size <= 0 || now - legacyUnchangedSince < LEGACY_SETTLE_MS) return false;
+        legacySize = -1;
+        legacyModified = null;
+        return true;
+    }
+
+    private Path claim(Path batch) throws IOException {
+        Path target = claimedDir.resolve(System.currentTimeMillis() + "-" + claimCount.incrementAndGet() + "-" + batch.getFileName());
+        try {
+            return Files.move(batch, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            // Somebody else got there first
+            return null;
+        } catch (AtomicMoveNotSupportedException e) {
+            return Files.move(batch, target);
+        }
+    }
+
+    /**
+     * Marks a claimed batch as applied
+     */
+    public void complete(Path claimed) {
+        try {
+            Files.deleteIfExists(claimed);
+        } catch (IOException e) {
+            System.out.println("Failed to remove applied change batch " + claimed.getFileName());
+        }
+    }
+
+    /**
+     * Sets aside a claimed batch that could not be read, so that it isn't retried forever but can still be inspected
+     */
+    public void reject(Path claimed) {
+        try {
+            Files.move(claimed, rejectedDir.resolve(claimed.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Failed to set aside unreadable change batch " + claimed.getFileName());
+        }
+    }
+}
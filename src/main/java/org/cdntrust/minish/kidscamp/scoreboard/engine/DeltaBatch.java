@@ -0,0 +1,32 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.util.Map;
+
+/**
+ * One batch of score changes as sent by a client, with the id the client gave it (if any) so that a resent batch
+ * can be recognised
+ */
+public class DeltaBatch {
+
+    private final String requestId;
+    private final Map<String, Integer> changes;
+
+    public DeltaBatch(String requestId, Map<String, Integer> changes) {
+        this.requestId = requestId;
+        this.changes = changes;
+    }
+
+    /**
+     * @return The client's id for this batch, or null if it didn't give one
+     */
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return Total change for each known team in the batch
+     */
+    public Map<String, Integer> getChanges() {
+        return changes;
+    }
+}
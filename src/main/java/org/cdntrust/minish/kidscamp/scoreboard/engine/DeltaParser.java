@@ -0,0 +1,79 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Reads a batch of score changes: a JSON object of team name to points, e.g. <tt>{"Red Girls": 10}</tt>.
+ * The batch may also carry the client's id for it as a string, e.g. <tt>{"requestId": "a1b2", "Red Girls": 10}</tt>.
+ * Streams over the tokens rather than building a tree, since this runs for every batch and request received.
+ */
+public final class DeltaParser {
+
+    public static final String REQUEST_ID_FIELD = "requestId";
+
+    private DeltaParser() {}
+
+    /**
+     * @param isKnownTeam Whether a team name can be scored; changes for other names are skipped
+     * @return Total change for each known team in the batch, leaving out any that come to nothing
+     * @throws IOException If the batch isn't a complete JSON object, or a team's changes add up to more than fits
+     */
+    public static Map<String, Integer> parse(byte[] json, Predicate<String> isKnownTeam) throws IOException {
+        return parseBatch(json, isKnownTeam).getChanges();
+    }
+
+    public static Map<String, Integer> parse(File file, Predicate<String> isKnownTeam) throws IOException {
+        return parseBatch(file, isKnownTeam).getChanges();
+    }
+
+    /**
+     * As {@link #parse(byte[], Predicate)}, also picking out the batch's request id
+     */
+    public static DeltaBatch parseBatch(byte[] json, Predicate<String> isKnownTeam) throws IOException {
+        try (JsonParser parser = JsonCodec.FACTORY.createParser(json)) {
+            return parse(parser, isKnownTeam);
+        }
+    }
+
+    public static DeltaBatch parseBatch(File file, Predicate<String> isKnownTeam) throws IOException {
+        try (JsonParser parser = JsonCodec.FACTORY.createParser(file)) {
+            return parse(parser, isKnownTeam);
+        }
+    }
+
+    private static DeltaBatch parse(JsonParser parser, Predicate<String> isKnownTeam) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) throw new IOException("Not a JSON object");
+
+        Map<String, Integer> changes = new LinkedHashMap<>();
+        String requestId = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String team = parser.getCurrentName();
+            token = parser.nextToken();
+            if (token == null) break;
+            if (token.isStructStart()) {
+                parser.skipChildren();
+            } else if (token == JsonToken.VALUE_STRING && REQUEST_ID_FIELD.equals(team)) {
+                requestId = parser.getText();
+            } else if (isKnownTeam.test(team)) {
+                int change = parser.getValueAsInt(0);
+                if (change == 0) continue;
+                try {
+                    changes.merge(team, change, Math::addExact);
+                } catch (ArithmeticException e) {
+                    throw new IOException("Changes for " + team + " add up to too many points");
+                }
+            }
+        }
+        if (token != JsonToken.END_OBJECT) throw new IOException("Incomplete JSON object");
+        changes.values().removeIf(change -> change == 0);
+        return new DeltaBatch(requestId, changes);
+    }
+}
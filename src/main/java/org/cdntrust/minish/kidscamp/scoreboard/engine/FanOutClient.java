@@ -0,0 +1,185 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Keeps the scores of a follower display in step with a leading scoreboard's {@link FanOutServer}, reconnecting
+ * whenever the connection drops. On reconnecting it only asks for the updates it missed.
+ */
+public class FanOutClient {
+
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final long MAX_RETRY_DELAY_MS = 5000;
+
+    private final String host;
+    private final int port;
+    private final TeamRegistry teamRegistry;
+    private final ScoreStore scoreStore;
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Socket socket;
+    // Only touched by the client thread
+    private long epoch;
+    private long seq;
+
+    /**
+     * @param leaderAddress <tt>host</tt> or <tt>host:port</tt> of the leading scoreboard; an IPv6 address with a
+     *                      port goes in brackets, e.g. <tt>[fd00::1]:15001</tt>
+     * @throws IllegalArgumentException If the address can't be understood
+     */
+    public FanOutClient(String leaderAddress, TeamRegistry teamRegistry, ScoreStore scoreStore) {
+        String address = leaderAddress == null ? "" : leaderAddress.trim();
+        String portText = null;
+        if (address.startsWith("[")) {
+            int end = address.indexOf(']');
+            if (end < 0) throw new IllegalArgumentException("Leader address " + leaderAddress + " is missing a closing ]");
+            String rest = address.substring(end + 1);
+            if (!rest.isEmpty()) {
+                if (!rest.startsWith(":")) throw new IllegalArgumentException("Leader address " + leaderAddress + " should be [address]:port");
+                portText = rest.substring(1);
+            }
+            address = address.substring(1, end);
+        } else if (address.indexOf(':') == address.lastIndexOf(':') && address.indexOf(':') >= 0) {
+            // Exactly one colon, so host:port; more than one is an IPv6 address without a port
+            int colon = address.indexOf(':');
+            portText = address.substring(colon + 1);
+            address = address.substring(0, colon);
+        }
+        if (address.isEmpty()) throw new IllegalArgumentException("Leader address " + leaderAddress + " has no host");
+        this.host = address;
+        this.port = portText == null ? FanOutServer.DEFAULT_PORT : parsePort(portText, leaderAddress);
+        this.teamRegistry = teamRegistry;
+        this.scoreStore = scoreStore;
+    }
+
+    private static int parsePort(String portText, String leaderAddress) {
+        int port;
+        try {
+            port = Integer.parseInt(portText);
+        } catch (NumberFormatException e) {
+            port = -1;
+        }
+        if (port < 1 || port > 65535) {
+            throw new IllegalArgumentException("Leader address " + leaderAddress + " should end in a port from 1 to 65535, e.g. :"
+                    + FanOutServer.DEFAULT_PORT);
+        }
+        return port;
+    }
+
+    public void start() {
+        running = true;
+        new DaemonThreadFactory("fan-out-client").newThread(this::run).start();
+    }
+
+    public void close() {
+        running = false;
+        closeSocket();
+    }
+
+    /**
+     * @return Whether we are currently connected to the leader
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public String getLeaderAddress() {
+        return (host.indexOf(':') >= 0 ? "[" + host + "]" : host) + ":" + port;
+    }
+
+    private void run() {
+        long retryDelay = 250;
+        while (running) {
+            try {
+                socket = new Socket();
+                socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+                socket.setTcpNoDelay(true);
+                // Missing a few heartbeats means the leader has gone, even if the connection hasn't said so
+                socket.setSoTimeout((int) FanOutServer.HEARTBEAT_MS * 3);
+
+                OutputStream out = socket.getOutputStream();
+                out.write((JsonCodec.FAN_OUT_WRITER.writeValueAsString(FanOutMessage.hello(epoch, seq)) + "\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                connected = true;
+                retryDelay = 250;
+                System.out.println("Following scoreboard at " + getLeaderAddress());
+
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = in.readLine()) != null) {
+                    FanOutMessage message = JsonCodec.FAN_OUT_READER.readValue(line);
+                    try {
+                        apply(message);
+                    } catch (RuntimeException e) {
+                        // Start again from a snapshot rather than carry on from a message we couldn't make sense of
+                        System.out.println("Failed to apply update from scoreboard at " + getLeaderAddress() + ", reconnecting: " + e);
+                        epoch = 0;
+                        seq = 0;
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                if (running && connected) System.out.println("Lost connection to scoreboard at " + getLeaderAddress() + ": " + e.getMessage());
+            } finally {
+                connected = false;
+                closeSocket();
+            }
+
+            if (!running) return;
+            try {
+                Thread.sleep(retryDelay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            retryDelay = Math.min(retryDelay * 2, MAX_RETRY_DELAY_MS);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException If the message is missing anything it needs
+     */
+    private void apply(FanOutMessage message) {
+        if (FanOutMessage.SNAPSHOT.equals(message.getType())) {
+            require(message.getEpoch() != null && message.getSeq() != null && message.getScores() != null, "snapshot");
+            Map<String, Long> scores = message.getScores();
+            for (String team : scores.keySet()) {
+                teamRegistry.register(team);
+            }
+            scoreStore.ensureCapacity(teamRegistry.size());
+            // Teams the leader doesn't have go back to nothing, rather than keeping a stale score
+            for (int teamId = 0; teamId < teamRegistry.size(); teamId++) {
+                Long score = scores.get(teamRegistry.nameOf(teamId));
+                scoreStore.set(teamId, score == null ? 0 : score);
+            }
+            epoch = message.getEpoch();
+            seq = message.getSeq();
+        } else if (FanOutMessage.SCORE.equals(message.getType())) {
+            require(message.getSeq() != null && message.getTeam() != null && message.getScore() != null, "score");
+            int teamId = teamRegistry.register(message.getTeam());
+            scoreStore.ensureCapacity(teamRegistry.size());
+            scoreStore.set(teamId, message.getScore());
+            seq = message.getSeq();
+        }
+    }
+
+    private static void require(boolean valid, String type) {
+        if (!valid) throw new IllegalArgumentException("Incomplete " + type + " message");
+    }
+
+    private void closeSocket() {
+        Socket current = socket;
+        if (current == null) return;
+        try {
+            current.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * One line of the protocol between a leading scoreboard and its followers. Each message is a single JSON object
+ * on its own line, with only the fields its type uses:
+ * <ul>
+ *     <li><tt>hello</tt> (follower to leader): the epoch and seq of the last update the follower has, if any</li>
+ *     <li><tt>snapshot</tt>: every team's score as of seq</li>
+ *     <li><tt>score</tt>: one team's new score, numbered seq</li>
+ *     <li><tt>ping</tt>: sent when there is nothing else to say, so followers notice a dead connection</li>
+ * </ul>
+ * Scores are sent as totals rather than changes, so applying an update twice does no harm.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class FanOutMessage {
+
+    public static final String HELLO = "hello";
+    public static final String SNAPSHOT = "snapshot";
+    public static final String SCORE = "score";
+    public static final String PING = "ping";
+
+    private String type;
+    private Long epoch;
+    private Long seq;
+    private String team;
+    private Long score;
+    private Map<String, Long> scores;
+
+    public FanOutMessage() {}
+
+    public FanOutMessage(String type) {
+        this.type = type;
+    }
+
+    public static FanOutMessage hello(long epoch, long seq) {
+        FanOutMessage message = new FanOutMessage(HELLO);
+        message.setEpoch(epoch);
+        message.setSeq(seq);
+        return message;
+    }
+
+    public static FanOutMessage snapshot(long epoch, long seq, Map<String, Long> scores) {
+        FanOutMessage message = new FanOutMessage(SNAPSHOT);
+        message.setEpoch(epoch);
+        message.setSeq(seq);
+        message.setScores(scores);
+        return message;
+    }
+
+    public static FanOutMessage score(long seq, String team, long score) {
+        FanOutMessage message = new FanOutMessage(SCORE);
+        message.setSeq(seq);
+        message.setTeam(team);
+        message.setScore(score);
+        return message;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * Identifies one run of the leader; sequence numbers from different runs can't be compared
+     */
+    public Long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(Long epoch) {
+        this.epoch = epoch;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public String getTeam() {
+        return team;
+    }
+
+    public void setTeam(String team) {
+        this.team = team;
+    }
+
+    public Long getScore() {
+        return score;
+    }
+
+    public void setScore(Long score) {
+        this.score = score;
+    }
+
+    public Map<String, Long> getScores() {
+        return scores;
+    }
+
+    public void setScores(Map<String, Long> scores) {
+        this.scores = scores;
+    }
+}
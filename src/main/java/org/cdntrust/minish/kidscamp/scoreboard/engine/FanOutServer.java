@@ -0,0 +1,215 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams every score change from this (leading) scoreboard to follower displays, over plain TCP with one
+ * {@link FanOutMessage} per line.
+ * <p>
+ * Updates are numbered. A follower that reconnects says which update it has; if that is still among the recent
+ * updates kept here it is only sent what it missed, otherwise it is sent a snapshot of every score first.
+ * A follower that can't keep up is disconnected, and catches up the same way when it reconnects.
+ */
+public class FanOutServer implements ScoreListener {
+
+    public static final int DEFAULT_PORT = 15001;
+
+    static final long HEARTBEAT_MS = 2000;
+    private static final int HANDSHAKE_TIMEOUT_MS = 5000;
+    private static final int BACKLOG_SIZE = 10000;
+    private static final int FOLLOWER_QUEUE_SIZE = 10000;
+
+    private final TeamRegistry teamRegistry;
+    private final ScoreStore scoreStore;
+    private final long epoch = System.currentTimeMillis();
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private final DaemonThreadFactory followerThreads = new DaemonThreadFactory("fan-out-follower");
+    // Guarded by this, along with seq, so followers always see updates in order and with no gaps
+    private final Deque<Update> backlog = new ArrayDeque<>();
+    private long seq;
+    private ServerSocket serverSocket;
+
+    public FanOutServer(TeamRegistry teamRegistry, ScoreStore scoreStore) {
+        this.teamRegistry = teamRegistry;
+        this.scoreStore = scoreStore;
+    }
+
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(port));
+        new DaemonThreadFactory("fan-out-accept").newThread(this::acceptFollowers).start();
+    }
+
+    public void stop() {
+        try {
+            if (serverSocket != null) serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        for (Follower follower : followers) {
+            follower.close();
+        }
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    @Override
+    public void scoreChanged(int teamId, long change, long score, String source) {
+        publish(teamId);
+    }
+
+    /**
+     * Sends a team's current score to every follower. The score is read under the lock rather than taken from the
+     * change, so however changes on different threads interleave, the last update sent is the latest score.
+     */
+    private synchronized void publish(int teamId) {
+        long updateSeq = ++seq;
+        Update update = new Update(updateSeq, line(FanOutMessage.score(updateSeq, teamRegistry.nameOf(teamId), scoreStore.get(teamId))));
+        backlog.addLast(update);
+        if (backlog.size() > BACKLOG_SIZE) backlog.removeFirst();
+        for (Follower follower : followers) {
+            follower.send(update.line);
+        }
+    }
+
+    /**
+     * Queues whatever a newly connected follower is missing, then starts sending it updates as they happen
+     */
+    private synchronized void join(Follower follower, FanOutMessage hello) {
+        Long theirEpoch = hello.getEpoch();
+        Long theirSeq = hello.getSeq();
+        boolean canCatchUp = theirEpoch != null && theirEpoch == epoch && theirSeq != null && theirSeq <= seq
+                && (backlog.isEmpty() ? theirSeq == seq : theirSeq >= backlog.peekFirst().seq - 1);
+        if (canCatchUp) {
+            for (Update update : backlog) {
+                if (update.seq > theirSeq) follower.send(update.line);
+            }
+        } else {
+            Map<String, Long> scores = new LinkedHashMap<>();
+            long[] current = scoreStore.snapshot();
+            List<String> names = teamRegistry.getNames();
+            for (int i = 0; i < current.length && i < names.size(); i++) {
+                scores.put(names.get(i), current[i]);
+            }
+            follower.send(line(FanOutMessage.snapshot(epoch, seq, scores)));
+        }
+        followers.add(follower);
+    }
+
+    private void acceptFollowers() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                followerThreads.newThread(new Follower(socket)).start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) System.out.println("Failed to accept follower: " + e.getMessage());
+            }
+        }
+    }
+
+    private static String line(FanOutMessage message) {
+        try {
+            return JsonCodec.FAN_OUT_WRITER.writeValueAsString(message);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't serialise fan-out message", e);
+        }
+    }
+
+    private static class Update {
+        final long seq;
+        final String line;
+
+        Update(long seq, String line) {
+            this.seq = seq;
+            this.line = line;
+        }
+    }
+
+    /**
+     * One connected follower, with its own queue and thread so a slow one never holds up scoring
+     */
+    private class Follower implements Runnable {
+
+        private final Socket socket;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(FOLLOWER_QUEUE_SIZE);
+        private volatile boolean closed;
+
+        Follower(Socket socket) {
+            this.socket = socket;
+        }
+
+        void send(String line) {
+            if (!queue.offer(line)) {
+                System.out.println("Follower " + socket.getRemoteSocketAddress() + " fell behind, disconnecting it");
+                close();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MS);
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                String helloLine = in.readLine();
+                if (helloLine == null) return;
+                FanOutMessage hello = JsonCodec.FAN_OUT_READER.readValue(helloLine);
+                join(this, hello);
+
+                Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+                String ping = line(new FanOutMessage(FanOutMessage.PING));
+                while (!closed) {
+                    String next = queue.poll(HEARTBEAT_MS, TimeUnit.MILLISECONDS);
+                    out.write(next == null ? ping : next);
+                    out.write('\n');
+                    // Send everything already queued in one go
+                    while ((next = queue.poll()) != null) {
+                        out.write(next);
+                        out.write('\n');
+                    }
+                    out.flush();
+                }
+            } catch (SocketException e) {
+                // Follower went away, or we're stopping
+            } catch (IOException e) {
+                System.out.println("Lost follower " + socket.getRemoteSocketAddress() + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            closed = true;
+            followers.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+}
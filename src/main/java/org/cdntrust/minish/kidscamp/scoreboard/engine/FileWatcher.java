@@ -0,0 +1,93 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a single file (or every entry of a directory) and runs a callback whenever it is created or modified.
+ * Uses a {@link WatchService} on the containing directory where the platform provides one, and
+ * falls back to (slower) polling of the last modified time otherwise. The polling check also runs
+ * while the watch service is active, to catch file systems that don't deliver events.
+ */
+public class FileWatcher implements Closeable {
+
+    private static final long FALLBACK_POLL_INTERVAL_MS = 2000;
+
+    private final Path file;
+    private final boolean watchingDirectory;
+    private final Runnable onChange;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private long lastModified = -1;
+
+    public FileWatcher(Path file, Runnable onChange) {
+        this.file = file.toAbsolutePath();
+        this.watchingDirectory = Files.isDirectory(this.file);
+        this.onChange = onChange;
+        this.thread = new DaemonThreadFactory("file-watcher").newThread(this::run);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    private void run() {
+        // Pick up anything that was written before we started watching
+        checkModifiedTime();
+
+        try (WatchService watchService = file.getFileSystem().newWatchService()) {
+            Path watched = watchingDirectory ? file : file.getParent();
+            watched.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (running) {
+                WatchKey key = watchService.poll(FALLBACK_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    checkModifiedTime();
+                    continue;
+                }
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (watchingDirectory || event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                        changed = true;
+                    }
+                }
+                key.reset();
+                if (changed) {
+                    lastModified = file.toFile().lastModified();
+                    onChange.run();
+                }
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            System.out.println("File watching unavailable, polling " + file.getFileName() + " instead");
+            pollForever();
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    private void pollForever() {
+        try {
+            while (running) {
+                checkModifiedTime();
+                Thread.sleep(FALLBACK_POLL_INTERVAL_MS);
+            }
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    private void checkModifiedTime() {
+        long modified = file.toFile().lastModified();
+        if (modified != 0 && modified != lastModified) {
+            lastModified = modified;
+            onChange.run();
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+}
@@ -0,0 +1,47 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the scoreboard engine on its own, with no display: taking score changes over the network and saving them.
+ * <p>
+ * Usage: <tt>HeadlessMain [data directory] [--mapped]</tt>
+ */
+public class HeadlessMain {
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path dataDir = Paths.get("");
+        boolean mappedStorage = false;
+        for (String arg : args) {
+            if ("--mapped".equals(arg)) {
+                mappedStorage = true;
+            } else {
+                dataDir = Paths.get(arg);
+            }
+        }
+
+        ScoreboardEngine engine = new ScoreboardEngine(dataDir, mappedStorage);
+        StartupReport startup = engine.getMetrics().startup();
+        startup.mark("JVM start");
+        engine.start();
+        startup.mark("Scores loaded");
+        for (Roster.Team team : Roster.readOrCreate(dataDir.resolve(ScoreboardEngine.ROSTER_FILE_NAME)).getTeams()) {
+            if (team.getName() != null) engine.registerTeam(team.getName());
+        }
+        startup.mark("Roster");
+        engine.startIngestion(() -> true);
+        engine.requestIngestion();
+        startup.markReady("Listening for changes");
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            engine.close();
+            stopped.countDown();
+        }));
+        System.out.println("Scoreboard engine running with " + engine.getTeamRegistry().size() + " teams; stop with Ctrl+C");
+        stopped.await();
+    }
+}
@@ -0,0 +1,60 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+/**
+ * How much {@link IngestionQueue} takes before turning score changes away
+ */
+public class IngestionLimits {
+
+    public static final int DEFAULT_CHANGES_PER_SECOND = 500;
+    public static final int DEFAULT_MAX_CHANGES_PER_BATCH = 1000;
+    public static final int DEFAULT_MAX_POINTS_PER_CHANGE = 10000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 20000;
+
+    public static final IngestionLimits DEFAULTS = new IngestionLimits(DEFAULT_CHANGES_PER_SECOND, DEFAULT_MAX_CHANGES_PER_BATCH,
+            DEFAULT_MAX_POINTS_PER_CHANGE, DEFAULT_QUEUE_CAPACITY);
+
+    private final int changesPerSecond;
+    private final int maxChangesPerBatch;
+    private final int maxPointsPerChange;
+    private final int queueCapacity;
+
+    /**
+     * @param changesPerSecond Changes taken per second from any one source (client address, or the change files);
+     *                         a source can briefly send up to a second's worth, or one whole batch, at once
+     * @param maxChangesPerBatch Most changes in one request or batch file; bigger ones are refused outright
+     * @param maxPointsPerChange Most points added or taken away by one change; bigger changes are refused
+     * @param queueCapacity Most changes waiting to be applied, from all sources together
+     */
+    public IngestionLimits(int changesPerSecond, int maxChangesPerBatch, int maxPointsPerChange, int queueCapacity) {
+        if (changesPerSecond <= 0 || maxChangesPerBatch <= 0 || maxPointsPerChange <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("Ingestion limits must be positive");
+        }
+        this.changesPerSecond = changesPerSecond;
+        this.maxChangesPerBatch = maxChangesPerBatch;
+        this.maxPointsPerChange = maxPointsPerChange;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getChangesPerSecond() {
+        return changesPerSecond;
+    }
+
+    public int getMaxChangesPerBatch() {
+        return maxChangesPerBatch;
+    }
+
+    public int getMaxPointsPerChange() {
+        return maxPointsPerChange;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * @return Most changes a source can send at once
+     */
+    int getBurst() {
+        return Math.max(changesPerSecond, maxChangesPerBatch);
+    }
+}
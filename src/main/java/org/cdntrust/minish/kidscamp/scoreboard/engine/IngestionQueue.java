@@ -0,0 +1,276 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BiConsumer;
+
+/**
+ * Stands between everything that sends score changes and the scores themselves, so a misbehaving client or a
+ * script stuck in a loop can't swamp the scoreboard.
+ * <p>
+ * Each batch of changes is checked against the {@link IngestionLimits} before being queued: too many changes in
+ * one batch, or too many points in one change, are refused; each source gets its own {@link TokenBucket} of
+ * changes per second; and the queue itself holds a fixed number of changes in total. A batch turned away for
+ * going too fast or the queue being full comes back with how long to wait, so the sender can try again.
+ * <p>
+ * Queued batches are applied one at a time, in the order they arrived, by a single thread, with each change passed
+ * on as it was sent so the journal records exactly what each source did. If applying a batch fails, the rest are
+ * still applied and the batch's failure callback is run instead, so whoever sent it can keep it to try again.
+ */
+public class IngestionQueue {
+
+    public enum Outcome {
+        /** Queued to be applied, possibly without some changes that were too big */
+        QUEUED,
+        /** Already applied under the same request id */
+        DUPLICATE,
+        /** Sent before under the same request id, and still waiting to be applied */
+        IN_PROGRESS,
+        /** More changes than allowed in one batch */
+        TOO_LARGE,
+        /** The source has sent too many changes lately */
+        RATE_LIMITED,
+        /** Too many changes are already waiting */
+        OVERLOADED
+    }
+
+    // Idle sources are forgotten oldest first beyond this, so a scan from many addresses can't use up memory
+    private static final int MAX_SOURCES = 10000;
+    private static final long OVERLOADED_RETRY_MS = 1000;
+    private static final long IN_PROGRESS_RETRY_MS = 1000;
+
+    private final BiConsumer<Map<String, Integer>, String> changeSink;
+    private final ScoreboardMetrics metrics;
+    private final RequestDeduplicator deduplicator;
+    private final LinkedBlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    // Guarded by this
+    private final LinkedHashMap<String, TokenBucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+    private IngestionLimits limits;
+    private int queuedChanges;
+    private volatile boolean running = true;
+
+    /**
+     * @param changeSink Applies changes, by team name, along with where they came from. Called on the queue's thread.
+     * @param metrics Counts the changes turned away
+     * @param deduplicator Recognises batches that have already been sent, and is told when they are applied
+     */
+    public IngestionQueue(BiConsumer<Map<String, Integer>, String> changeSink, IngestionLimits limits, ScoreboardMetrics metrics,
+                          RequestDeduplicator deduplicator) {
+        this.changeSink = changeSink;
+        this.limits = limits;
+        this.metrics = metrics;
+        this.deduplicator = deduplicator;
+        new DaemonThreadFactory("ingestion-apply").newThread(this::run).start();
+    }
+
+    public synchronized void setLimits(IngestionLimits limits) {
+        this.limits = limits;
+        // Start every source afresh at the new rate
+        buckets.clear();
+    }
+
+    public synchronized IngestionLimits getLimits() {
+        return limits;
+    }
+
+    /**
+     * @return Number of changes waiting to be applied
+     */
+    public synchronized int getQueuedChanges() {
+        return queuedChanges;
+    }
+
+    public void close() {
+        running = false;
+        queue.offer(new Pending(null, null, null, null, null));
+    }
+
+    /**
+     * Queues a batch of changes, unless it breaks the limits. Safe to call from any thread.
+     *
+     * @param source Where the changes came from; each source is limited separately
+     * @param changes Points to add to each team, by team name
+     * @param requestId The client's id for the batch, or null
+     * @param onApplied Run once the changes have been applied (or straight away, if there turn out to be none), or null
+     * @param onFailed Run instead of onApplied if applying the changes failed, or null. Some of them may have been
+     *                 applied; the request id is forgotten, so the batch can be sent again.
+     */
+    public synchronized Admission offer(String source, Map<String, Integer> changes, String requestId, Runnable onApplied,
+                                        Runnable onFailed) {
+        if (changes.size() > limits.getMaxChangesPerBatch()) {
+            metrics.deltasTooLarge(changes.size());
+            return new Admission(Outcome.TOO_LARGE, 0, changes.size(), 0);
+        }
+        // Before the rate limit, so a resent batch doesn't use up the source's allowance
+        RequestDeduplicator.Seen seen = deduplicator.see(requestId);
+        if (seen == RequestDeduplicator.Seen.APPLIED) {
+            metrics.duplicateIgnored();
+            return new Admission(Outcome.DUPLICATE, 0, 0, 0);
+        } else if (seen == RequestDeduplicator.Seen.PENDING) {
+            // The original could still fail, so the sender should try again rather than take it as done
+            return new Admission(Outcome.IN_PROGRESS, 0, 0, IN_PROGRESS_RETRY_MS);
+        }
+        Map<String, Integer> accepted = new LinkedHashMap<>();
+        int tooBig = 0;
+        for (Map.Entry<String, Integer> change : changes.entrySet()) {
+            if (change.getValue() == 0) continue;
+            if (Math.abs((long) change.getValue()) <= limits.getMaxPointsPerChange()) {
+                accepted.put(change.getKey(), change.getValue());
+            } else {
+                tooBig++;
+            }
+        }
+
+        // Turned away whole, too big changes and all, so the metrics count the same changes the sender is told of
+        int refused = changes.size();
+        // An empty queue always takes one batch, so the largest allowed batch is never stuck
+        if (queuedChanges > 0 && queuedChanges + accepted.size() > limits.getQueueCapacity()) {
+            metrics.deltasShed(refused);
+            // So it isn't mistaken for a duplicate when it is sent again
+            deduplicator.forget(requestId);
+            return new Admission(Outcome.OVERLOADED, 0, refused, OVERLOADED_RETRY_MS);
+        }
+        long retryAfterMs = bucketFor(source).tryTake(accepted.size());
+        if (retryAfterMs > 0) {
+            metrics.deltasRateLimited(refused);
+            deduplicator.forget(requestId);
+            return new Admission(Outcome.RATE_LIMITED, 0, refused, retryAfterMs);
+        }
+
+        if (tooBig > 0) metrics.deltasTooLarge(tooBig);
+        if (accepted.isEmpty()) {
+            deduplicator.applied(requestId);
+            if (onApplied != null) onApplied.run();
+        } else {
+            queuedChanges += accepted.size();
+            queue.add(new Pending(source, accepted, requestId, onApplied, onFailed));
+        }
+        return new Admission(Outcome.QUEUED, accepted.size(), tooBig, 0);
+    }
+
+    private TokenBucket bucketFor(String source) {
+        TokenBucket bucket = buckets.get(source);
+        if (bucket == null) {
+            if (buckets.size() >= MAX_SOURCES) forgetIdleSources();
+            bucket = new TokenBucket(limits.getChangesPerSecond(), limits.getBurst());
+            buckets.put(source, bucket);
+        }
+        return bucket;
+    }
+
+    /**
+     * Forgets sources that have been quiet long enough for their bucket to fill; a full bucket is no different to a
+     * new one, so this never lets anyone through sooner. If they are all busy, the least recently seen goes anyway.
+     */
+    private void forgetIdleSources() {
+        buckets.values().removeIf(TokenBucket::isFull);
+        Iterator<String> leastRecent = buckets.keySet().iterator();
+        while (buckets.size() >= MAX_SOURCES) {
+            leastRecent.next();
+            leastRecent.remove();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            Pending pending;
+            try {
+                pending = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (pending.changes != null) apply(pending);
+        }
+    }
+
+    private void apply(Pending pending) {
+        boolean applied;
+        try {
+            changeSink.accept(pending.changes, pending.source);
+            deduplicator.applied(pending.requestId);
+            applied = true;
+        } catch (RuntimeException e) {
+            System.out.println("Failed to apply score changes from " + pending.source + ": " + e);
+            deduplicator.forget(pending.requestId);
+            applied = false;
+        }
+        synchronized (this) {
+            queuedChanges -= pending.changes.size();
+        }
+        Runnable callback = applied ? pending.onApplied : pending.onFailed;
+        if (callback == null) return;
+        try {
+            callback.run();
+        } catch (RuntimeException e) {
+            System.out.println("Failed to finish applying score changes from " + pending.source + ": " + e);
+        }
+    }
+
+    /**
+     * What became of a batch offered to the queue
+     */
+    public static class Admission {
+
+        private final Outcome outcome;
+        private final int queued;
+        private final int refused;
+        private final long retryAfterMs;
+
+        Admission(Outcome outcome, int queued, int refused, long retryAfterMs) {
+            this.outcome = outcome;
+            this.queued = queued;
+            this.refused = refused;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * @return Number of changes queued
+         */
+        public int getQueued() {
+            return queued;
+        }
+
+        /**
+         * @return Number of changes refused
+         */
+        public int getRefused() {
+            return refused;
+        }
+
+        /**
+         * @return Whether sending the same batch again later could succeed
+         */
+        public boolean isRetryable() {
+            return outcome == Outcome.RATE_LIMITED || outcome == Outcome.OVERLOADED || outcome == Outcome.IN_PROGRESS;
+        }
+
+        /**
+         * @return How long to wait before sending the batch again, if it is {@link #isRetryable() retryable}
+         */
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+
+    private static class Pending {
+        final String source;
+        final Map<String, Integer> changes;
+        final String requestId;
+        final Runnable onApplied;
+        final Runnable onFailed;
+
+        Pending(String source, Map<String, Integer> changes, String requestId, Runnable onApplied, Runnable onFailed) {
+            this.source = source;
+            this.changes = changes;
+            this.requestId = requestId;
+            this.onApplied = onApplied;
+            this.onFailed = onFailed;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.util.Map;
+
+/**
+ * Shared readers and writers for all of the scoreboard's JSON. They are immutable and thread safe, so every file
+ * and request reuses the same (already warmed up) serializers instead of building a new ObjectMapper each time.
+ */
+public final class JsonCodec {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** For streaming straight over large files and score change batches */
+    public static final JsonFactory FACTORY = MAPPER.getFactory();
+
+    /** Saved scores: a JSON object of team name to score */
+    public static final ObjectWriter SCORES_WRITER = MAPPER.writerFor(new TypeReference<Map<String, Long>>() {});
+
+    public static final ObjectReader ROSTER_READER = MAPPER.readerFor(Roster.class);
+    public static final ObjectWriter ROSTER_WRITER = MAPPER.writerFor(Roster.class).with(SerializationFeature.INDENT_OUTPUT);
+
+    public static final ObjectReader JOURNAL_EVENT_READER = MAPPER.readerFor(ScoreJournal.Event.class);
+    public static final ObjectWriter JOURNAL_EVENT_WRITER = MAPPER.writerFor(ScoreJournal.Event.class);
+
+    public static final ObjectReader JOURNAL_SNAPSHOT_READER = MAPPER.readerFor(ScoreJournal.Snapshot.class);
+    public static final ObjectWriter JOURNAL_SNAPSHOT_WRITER = MAPPER.writerFor(ScoreJournal.Snapshot.class);
+
+    public static final ObjectReader FAN_OUT_READER = MAPPER.readerFor(FanOutMessage.class);
+    public static final ObjectWriter FAN_OUT_WRITER = MAPPER.writerFor(FanOutMessage.class);
+
+    private JsonCodec() {}
+
+    /**
+     * Reader for any other type, sharing the same underlying caches
+     */
+    public static ObjectReader readerFor(Class<?> type) {
+        return MAPPER.readerFor(type);
+    }
+
+    public static ObjectWriter writerFor(Class<?> type) {
+        return MAPPER.writerFor(type);
+    }
+}
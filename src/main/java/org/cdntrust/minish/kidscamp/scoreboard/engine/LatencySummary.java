@@ -0,0 +1,60 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * Point in time summary of a {@link LatencyHistogram}, in microseconds. Shown in JMX as a composite value.
+ */
+public class LatencySummary {
+
+    private final long count;
+    private final double meanMicros;
+    private final double p50Micros;
+    private final double p90Micros;
+    private final double p99Micros;
+    private final double maxMicros;
+
+    LatencySummary(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+        this(count, meanNanos / 1000, p50Nanos / 1000.0, p90Nanos / 1000.0, p99Nanos / 1000.0, maxNanos / 1000.0);
+    }
+
+    @ConstructorProperties({"count", "meanMicros", "p50Micros", "p90Micros", "p99Micros", "maxMicros"})
+    public LatencySummary(long count, double meanMicros, double p50Micros, double p90Micros, double p99Micros, double maxMicros) {
+        this.count = count;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p90Micros = p90Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMicros() {
+        return meanMicros;
+    }
+
+    public double getP50Micros() {
+        return p50Micros;
+    }
+
+    public double getP90Micros() {
+        return p90Micros;
+    }
+
+    public double getP99Micros() {
+        return p99Micros;
+    }
+
+    public double getMaxMicros() {
+        return maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) return "-";
+        return String.format("n=%d p50=%.0fus p99=%.0fus max=%.0fus", count, p50Micros, p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,204 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary, memory-mapped copy of the scores: a fixed header followed by one 64-bit slot per team id.
+ * Saving a change is a single in-place store into the mapped file, and loading is a map rather than a parse.
+ * <p>
+ * Header layout: magic, version, capacity (slots), team count (ints), then a checksum (long) which is the
+ * sum of every slot. The checksum is kept up to date with each store, so a change that was interrupted half way
+ * shows up as a mismatch on the next load rather than as a silently wrong score. Team names are kept,
+ * one per line in id order, in a small text file alongside, which only changes when a team is added.
+ * <p>
+ * A store is safe from the application crashing as soon as it is made, as the operating system still holds it,
+ * but only reaches the disk itself when forced. That happens every {@value #FORCE_INTERVAL_MS}ms if anything has
+ * changed, so a power cut loses at most the changes made in the last second or so.
+ */
+public class MappedScoreFile {
+
+    private static final int MAGIC = 0x4B435342; // "KCSB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int COUNT_OFFSET = 12;
+    private static final int CHECKSUM_OFFSET = 16;
+    private static final int MIN_CAPACITY = 64;
+    static final long FORCE_INTERVAL_MS = 1000;
+
+    private final Path dataFile;
+    private final Path namesFile;
+    private final TeamRegistry teamRegistry;
+    private final ScoreStore scoreStore;
+    private final ScheduledExecutorService forcer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("score-file-force"));
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    private long checksum;
+    private boolean dirty;
+
+    public MappedScoreFile(Path dataFile, TeamRegistry teamRegistry, ScoreStore scoreStore) {
+        this.dataFile = dataFile;
+        this.namesFile = dataFile.resolveSibling(dataFile.getFileName() + ".teams");
+        this.teamRegistry = teamRegistry;
+        this.scoreStore = scoreStore;
+    }
+
+    public boolean exists() {
+        return Files.exists(dataFile) && Files.exists(namesFile);
+    }
+
+    /**
+     * Reads the scores from the file, after checking that it is complete and consistent
+     *
+     * @return Score of every team, by name
+     * @throws IOException If the file can't be read, or fails the consistency checks
+     */
+    public Map<String, Long> load() throws IOException {
+        long start = System.nanoTime();
+        List<String> names = Files.readAllLines(namesFile, StandardCharsets.UTF_8);
+        Map<String, Long> scores = new LinkedHashMap<>();
+        try (FileChannel readChannel = FileChannel.open(dataFile, StandardOpenOption.READ)) {
+            if (readChannel.size() < HEADER_SIZE) throw new IOException("Score file is truncated");
+            MappedByteBuffer map = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            if (map.getInt(0) != MAGIC) throw new IOException("Not a score file");
+            if (map.getInt(4) != VERSION) throw new IOException("Unsupported score file version " + map.getInt(4));
+            int fileCapacity = map.getInt(CAPACITY_OFFSET);
+            int fileCount = map.getInt(COUNT_OFFSET);
+            if (fileCount > fileCapacity || readChannel.size() < slotOffset(fileCapacity)) throw new IOException("Score file is truncated");
+            if (fileCount != names.size()) throw new IOException("Score file and team list don't match");
+
+            long sum = 0;
+            for (int i = 0; i < fileCount; i++) {
+                long score = map.getLong(slotOffset(i));
+                sum += score;
+                scores.put(names.get(i), score);
+            }
+            if (sum != map.getLong(CHECKSUM_OFFSET)) throw new IOException("Score file checksum doesn't match");
+        }
+        System.out.println(String.format("Loaded %d team scores from %s in %.1f ms",
+                scores.size(), dataFile.getFileName(), (System.nanoTime() - start) / 1_000_000.0));
+        return scores;
+    }
+
+    /**
+     * Maps the file for writing, and fills it with the current score of every registered team
+     */
+    public synchronized void open() throws IOException {
+        channel = FileChannel.open(dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        capacity = 0;
+        count = 0;
+        checksum = 0;
+        grow(teamRegistry.size());
+        // Until the count is filled in, the file doesn't match the team list, so a half finished rewrite is never loaded
+        buffer.putInt(COUNT_OFFSET, 0);
+
+        List<String> names = teamRegistry.getNames();
+        for (int i = 0; i < names.size(); i++) {
+            long score = scoreStore.get(i);
+            buffer.putLong(slotOffset(i), score);
+            checksum += score;
+        }
+        buffer.putLong(CHECKSUM_OFFSET, checksum);
+        saveNames(names);
+        buffer.force();
+        forcer.scheduleWithFixedDelay(this::forceIfDirty, FORCE_INTERVAL_MS, FORCE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Saves the current score of a team. Safe to call from any thread.
+     */
+    public synchronized void write(int teamId) {
+        if (buffer == null) return;
+        if (teamId >= count) {
+            try {
+                ensureTeams();
+            } catch (IOException e) {
+                System.out.println("Failed to add teams to score file: " + e.getMessage());
+                return;
+            }
+        }
+        // Read the score while holding the lock, so that whichever write comes last stores the newest score
+        writeSlot(teamId, scoreStore.get(teamId));
+    }
+
+    private void writeSlot(int teamId, long score) {
+        int offset = slotOffset(teamId);
+        checksum += score - buffer.getLong(offset);
+        buffer.putLong(offset, score);
+        buffer.putLong(CHECKSUM_OFFSET, checksum);
+        dirty = true;
+    }
+
+    private synchronized void forceIfDirty() {
+        if (buffer == null || !dirty) return;
+        buffer.force();
+        dirty = false;
+    }
+
+    /**
+     * Grows the file to hold every registered team, and saves their names. New teams start at zero.
+     */
+    private void ensureTeams() throws IOException {
+        List<String> names = teamRegistry.getNames();
+        if (names.size() <= count) return;
+        grow(names.size());
+        for (int i = count; i < names.size(); i++) {
+            // Not yet part of the checksum, so no need to adjust it
+            buffer.putLong(slotOffset(i), 0);
+        }
+        saveNames(names);
+    }
+
+    private void grow(int teamCount) throws IOException {
+        if (teamCount <= capacity && buffer != null) return;
+        int grownCapacity = Math.max(MIN_CAPACITY, Math.max(teamCount, capacity * 2));
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, slotOffset(grownCapacity));
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, grownCapacity);
+        capacity = grownCapacity;
+    }
+
+    private void saveNames(List<String> names) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (String name : names) {
+            lines.append(name).append('\n');
+        }
+        AtomicFiles.write(namesFile, lines.toString().getBytes(StandardCharsets.UTF_8));
+        count = names.size();
+        buffer.putInt(COUNT_OFFSET, count);
+    }
+
+    private static int slotOffset(int teamId) {
+        return HEADER_SIZE + teamId * 8;
+    }
+
+    /**
+     * Forces all changes to disk and closes the file
+     */
+    public synchronized void close() {
+        forcer.shutdownNow();
+        if (buffer == null) return;
+        buffer.force();
+        buffer = null;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Failed to close score file: " + e.getMessage());
+        }
+    }
+}
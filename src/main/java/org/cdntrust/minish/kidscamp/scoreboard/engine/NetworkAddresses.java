@@ -0,0 +1,184 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The addresses this machine can be reached on, found by listing its network interfaces, so no DNS or route to the
+ * internet is needed. Listed on a background thread and again every {@value #POLL_INTERVAL_MS}ms, so a cable being
+ * plugged in or a Wi-Fi network being joined shows up without a restart; listeners only hear about it when
+ * something has actually changed.
+ */
+public class NetworkAddresses {
+
+    static final long POLL_INTERVAL_MS = 5000;
+
+    // Names of the adapters made by VMs and containers, which are never the one phones on the camp network can reach
+    private static final String[] VIRTUAL_NAMES = {"virtual", "vmware", "vmnet", "vbox", "docker", "vethernet", "hyper-v", "veth"};
+
+    private final ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("network-addresses"));
+    private final List<Consumer<List<Candidate>>> listeners = new CopyOnWriteArrayList<>();
+    // Null until the interfaces have been listed once; only touched by the polling thread
+    private List<Candidate> current;
+
+    public void start() {
+        poller.scheduleWithFixedDelay(this::refresh, 0, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        poller.shutdownNow();
+    }
+
+    /**
+     * Registers a listener to be given the interfaces once they have first been listed, and again whenever they
+     * change. Called on the polling thread.
+     */
+    public void addListener(Consumer<List<Candidate>> listener) {
+        listeners.add(listener);
+    }
+
+    private void refresh() {
+        List<Candidate> found;
+        try {
+            found = list();
+        } catch (SocketException e) {
+            System.out.println("Failed to list network interfaces: " + e.getMessage());
+            found = Collections.emptyList();
+        }
+        if (found.equals(current)) return;
+        current = found;
+        for (Consumer<List<Candidate>> listener : listeners) {
+            listener.accept(found);
+        }
+    }
+
+    /**
+     * @return One address for each interface that is up, best first
+     */
+    static List<Candidate> list() throws SocketException {
+        List<Candidate> found = new ArrayList<>();
+        for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (!networkInterface.isUp() || networkInterface.isLoopback()) continue;
+            boolean virtual = networkInterface.isVirtual() || looksVirtual(networkInterface);
+            Candidate best = null;
+            for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                int rank = rank(address);
+                if (rank < 0) continue;
+                if (virtual) rank += 10;
+                if (best == null || rank < best.rank) {
+                    // Drop any IPv6 scope, which only means something on this machine
+                    String host = address.getHostAddress();
+                    int scope = host.indexOf('%');
+                    if (scope >= 0) host = host.substring(0, scope);
+                    best = new Candidate(networkInterface.getName(), networkInterface.getDisplayName(), host, rank);
+                }
+            }
+            if (best != null) found.add(best);
+        }
+        found.sort(Comparator.comparingInt((Candidate candidate) -> candidate.rank).thenComparing(Candidate::getInterfaceName));
+        return found;
+    }
+
+    /**
+     * @return How likely other devices on the local network can reach us on this address, lowest first; or -1 if
+     * they can't (or not without more than just the address)
+     */
+    private static int rank(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isAnyLocalAddress() || address.isMulticastAddress()) return -1;
+        if (address instanceof Inet4Address) {
+            if (address.isSiteLocalAddress()) return 0;
+            return address.isLinkLocalAddress() ? 2 : 1;
+        }
+        // An IPv6 link-local address needs a scope to be usable, which a phone can't be told in a URL
+        if (address.isLinkLocalAddress()) return -1;
+        return 3;
+    }
+
+    private static boolean looksVirtual(NetworkInterface networkInterface) {
+        String names = (networkInterface.getName() + " " + networkInterface.getDisplayName()).toLowerCase(Locale.ROOT);
+        for (String virtualName : VIRTUAL_NAMES) {
+            if (names.contains(virtualName)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param preferredInterface Name of the interface chosen to advertise, or null to pick automatically
+     * @return The chosen interface if it is up, otherwise the best one; or null if there are none
+     */
+    public static Candidate choose(List<Candidate> candidates, String preferredInterface) {
+        for (Candidate candidate : candidates) {
+            if (candidate.getInterfaceName().equals(preferredInterface)) return candidate;
+        }
+        return candidates.isEmpty() ? null : candidates.get(0);
+    }
+
+    /**
+     * A network interface, with the address on it that others are most likely to reach us on
+     */
+    public static class Candidate {
+
+        private final String interfaceName;
+        private final String displayName;
+        private final String address;
+        private final int rank;
+
+        Candidate(String interfaceName, String displayName, String address, int rank) {
+            this.interfaceName = interfaceName;
+            this.displayName = displayName;
+            this.address = address;
+            this.rank = rank;
+        }
+
+        public String getInterfaceName() {
+            return interfaceName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        /**
+         * @return The address as it goes in a URL, i.e. with any IPv6 address in brackets
+         */
+        public String getUrlHost() {
+            return address.indexOf(':') >= 0 ? "[" + address + "]" : address;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Candidate)) return false;
+            Candidate other = (Candidate) o;
+            return rank == other.rank && interfaceName.equals(other.interfaceName) && Objects.equals(displayName, other.displayName)
+                    && address.equals(other.address);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(interfaceName, displayName, address, rank);
+        }
+
+        @Override
+        public String toString() {
+            return displayName + " (" + address + ")";
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the request ids seen recently, so a batch of changes resent by a client (e.g. a phone retrying on
+ * flaky Wi-Fi) is only applied once.
+ * <p>
+ * An id is first remembered as pending, while its batch waits to be applied, and then as applied; only then is
+ * a resent batch a duplicate, so a client is never told its changes are in when the original might yet fail.
+ * <p>
+ * Ids are forgotten once they are older than the window, or when more than the maximum number are being
+ * remembered, oldest first, so memory stays bounded however many requests arrive.
+ */
+public class RequestDeduplicator {
+
+    public enum Seen {
+        /** Not seen within the window; now remembered as pending */
+        FIRST,
+        /** Seen before, and its batch is still waiting to be applied */
+        PENDING,
+        /** Seen before, and its batch has been applied */
+        APPLIED
+    }
+
+    private final long windowMs;
+    private final int maxIds;
+    // In the order first seen, so the oldest are always at the front
+    private final LinkedHashMap<String, Entry> seen = new LinkedHashMap<>();
+
+    /**
+     * @param windowMs How long to remember each id for
+     * @param maxIds Most ids to remember at once
+     */
+    public RequestDeduplicator(long windowMs, int maxIds) {
+        this.windowMs = windowMs;
+        this.maxIds = maxIds;
+    }
+
+    /**
+     * Records a request id as seen, if it hasn't been already. Safe to call from any thread.
+     *
+     * @param requestId The client's id for a batch of changes; null or empty if it didn't give one
+     * @return Whether the batch should be applied ({@link Seen#FIRST}), or what became of the last one sent
+     */
+    public synchronized Seen see(String requestId) {
+        if (requestId == null || requestId.isEmpty()) return Seen.FIRST;
+        long now = System.currentTimeMillis();
+        forgetOlderThan(now - windowMs);
+
+        Entry previous = seen.get(requestId);
+        if (previous != null) return previous.applied ? Seen.APPLIED : Seen.PENDING;
+        seen.put(requestId, new Entry(now));
+        if (seen.size() > maxIds) {
+            Iterator<String> oldest = seen.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+        }
+        return Seen.FIRST;
+    }
+
+    /**
+     * Records that a request's batch has been applied, so it is a duplicate if sent again
+     *
+     * @param requestId As given to {@link #see(String)}; null or empty is ignored
+     */
+    public synchronized void applied(String requestId) {
+        if (requestId == null || requestId.isEmpty()) return;
+        Entry entry = seen.get(requestId);
+        if (entry != null) entry.applied = true;
+    }
+
+    /**
+     * Forgets a request id, so the batch is applied if it is sent again; for a batch turned away or that failed
+     *
+     * @param requestId As given to {@link #see(String)}; null or empty is ignored
+     */
+    public synchronized void forget(String requestId) {
+        if (requestId == null || requestId.isEmpty()) return;
+        seen.remove(requestId);
+    }
+
+    private void forgetOlderThan(long cutoff) {
+        Iterator<Map.Entry<String, Entry>> oldest = seen.entrySet().iterator();
+        while (oldest.hasNext() && oldest.next().getValue().seenAt < cutoff) {
+            oldest.remove();
+        }
+    }
+
+    private static class Entry {
+        final long seenAt;
+        boolean applied;
+
+        Entry(long seenAt) {
+            this.seenAt = seenAt;
+        }
+    }
+}
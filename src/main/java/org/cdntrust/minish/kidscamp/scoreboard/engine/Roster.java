@@ -0,0 +1,87 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The teams shown on the scoreboard, in display order, as read from the roster file
+ */
+public class Roster {
+
+    private List<Team> teams = new ArrayList<>();
+
+    public Roster() {}
+
+    public Roster(List<Team> teams) {
+        this.teams = teams;
+    }
+
+    public List<Team> getTeams() {
+        return teams;
+    }
+
+    public void setTeams(List<Team> teams) {
+        this.teams = teams;
+    }
+
+    /**
+     * Reads the roster from file, first creating the file with the default roster if there isn't one yet
+     */
+    public static Roster readOrCreate(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            Roster roster = defaultRoster();
+            AtomicFiles.write(file, JsonCodec.ROSTER_WRITER.writeValueAsBytes(roster));
+            return roster;
+        }
+        Roster roster = JsonCodec.ROSTER_READER.readValue(file.toFile());
+        if (roster.getTeams() == null) throw new IOException("Roster has no teams");
+        return roster;
+    }
+
+    /**
+     * The original line-up of Kids Camp cabins
+     */
+    public static Roster defaultRoster() {
+        List<Team> teams = new ArrayList<>();
+        for (String group : new String[]{"Boys", "Girls"}) {
+            for (String colour : new String[]{"Blue", "Green", "Orange", "Red", "Yellow"}) {
+                teams.add(new Team(colour + " " + group, colour.toLowerCase()));
+            }
+        }
+        return new Roster(teams);
+    }
+
+    public static class Team {
+        private String name;
+        private String colour;
+
+        public Team() {}
+
+        public Team(String name, String colour) {
+            this.name = name;
+            this.colour = colour;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return Bar colour, in any format understood by CSS (e.g. "red" or "#ff0000"), or null to use the stylesheet
+         */
+        public String getColour() {
+            return colour;
+        }
+
+        public void setColour(String colour) {
+            this.colour = colour;
+        }
+    }
+}
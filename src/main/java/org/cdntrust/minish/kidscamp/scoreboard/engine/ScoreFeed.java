@@ -0,0 +1,294 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Live scores for browsers and phones, as server-sent events.
+ * <p>
+ * <tt>GET /scores/stream</tt> sends a <tt>snapshot</tt> event with every team's score, then a <tt>scores</tt>
+ * event with the new totals of just the teams that changed, at most every {@value #MIN_INTERVAL_MS}ms.
+ * <tt>GET /scores</tt> is a small page showing the feed.
+ * <p>
+ * Rather than queueing each change for each viewer, every team's score remembers the (global) number of the last
+ * change to it, and each viewer only remembers the number of the last change it was sent and the score it was last
+ * sent for each team, so a team is never sent twice with the same score. So however fast scores change or however
+ * slow a viewer is, each viewer costs the same small amount of memory; a slow viewer just gets fewer, bigger
+ * updates. Viewers are written to by a small shared pool rather than a thread each, and one that
+ * stops reading altogether (e.g. a phone that left Wi-Fi mid-write) is dropped after {@value #STALLED_WRITE_MS}ms.
+ */
+public class ScoreFeed implements ScoreListener {
+
+    public static final String PAGE_PATH = "/scores";
+    public static final String STREAM_PATH = "/scores/stream";
+
+    static final long MIN_INTERVAL_MS = 100;
+    private static final long HEARTBEAT_MS = 15000;
+    private static final long STALLED_WRITE_MS = 10000;
+    private static final int MAX_VIEWERS = 500;
+    private static final long NOT_SENT = Long.MIN_VALUE;
+    // Enough that a few viewers stuck mid-write (until TCP gives up on them) don't hold up everyone else
+    private static final int WRITER_THREADS = 16;
+
+    private final TeamRegistry teamRegistry;
+    private final ScoreStore scoreStore;
+    private final List<Viewer> viewers = new CopyOnWriteArrayList<>();
+    private final ExecutorService writers = Executors.newFixedThreadPool(WRITER_THREADS, new DaemonThreadFactory("score-feed-writer"));
+    private final Object changed = new Object();
+    // Number of the last change to each team; only grown or written while holding the lock on this
+    private volatile AtomicLongArray changedAt = new AtomicLongArray(0);
+    private long lastChange;
+    private boolean pending;
+    private volatile boolean running = true;
+    private final byte[] page;
+
+    public ScoreFeed(TeamRegistry teamRegistry, ScoreStore scoreStore) {
+        this.teamRegistry = teamRegistry;
+        this.scoreStore = scoreStore;
+        this.page = readPage();
+        new DaemonThreadFactory("score-feed").newThread(this::run).start();
+    }
+
+    public HttpHandler pageHandler() {
+        return exchange -> {
+            try {
+                exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+                exchange.sendResponseHeaders(200, page.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(page);
+                }
+            } finally {
+                exchange.close();
+            }
+        };
+    }
+
+    public HttpHandler streamHandler() {
+        return this::openStream;
+    }
+
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    public void close() {
+        running = false;
+        synchronized (changed) {
+            changed.notifyAll();
+        }
+        for (Viewer viewer : viewers) {
+            viewer.close();
+        }
+        writers.shutdownNow();
+    }
+
+    @Override
+    public void scoreChanged(int teamId, long change, long score, String source) {
+        synchronized (this) {
+            AtomicLongArray current = changedAt;
+            if (teamId >= current.length()) {
+                AtomicLongArray grown = new AtomicLongArray(Math.max(teamId + 1, current.length() * 2));
+                for (int i = 0; i < current.length(); i++) {
+                    grown.set(i, current.get(i));
+                }
+                changedAt = current = grown;
+            }
+            current.set(teamId, ++lastChange);
+        }
+        synchronized (changed) {
+            pending = true;
+            changed.notifyAll();
+        }
+    }
+
+    /**
+     * Every change numbered up to this has been recorded in {@link #changedAt}
+     */
+    private synchronized long lastChange() {
+        return lastChange;
+    }
+
+    private void openStream(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "GET");
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        if (viewers.size() >= MAX_VIEWERS) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.sendResponseHeaders(200, 0);
+
+        Viewer viewer = new Viewer(exchange);
+        // Everything up to here is in the snapshot, so only later changes need sending
+        viewer.lastSent = lastChange();
+        Map<String, Long> scores = new LinkedHashMap<>();
+        long[] current = scoreStore.snapshot();
+        List<String> names = teamRegistry.getNames();
+        for (int i = 0; i < current.length && i < names.size(); i++) {
+            scores.put(names.get(i), current[i]);
+        }
+        viewer.sent(current);
+        viewer.write(event("snapshot", scores));
+        viewers.add(viewer);
+        // The exchange stays open once we return; from here on the viewer is written to by the feed
+    }
+
+    /**
+     * Waits for changes, and sends them to every viewer not still busy with the last lot
+     */
+    private void run() {
+        long lastHeartbeat = System.currentTimeMillis();
+        while (running) {
+            try {
+                synchronized (changed) {
+                    if (!pending) changed.wait(HEARTBEAT_MS);
+                    pending = false;
+                }
+                long now = System.currentTimeMillis();
+                boolean heartbeat = now - lastHeartbeat >= HEARTBEAT_MS;
+                if (heartbeat) lastHeartbeat = now;
+
+                long upTo = lastChange();
+                for (Viewer viewer : viewers) {
+                    if (viewer.lastSent < upTo || heartbeat) {
+                        if (viewer.flushing.compareAndSet(false, true)) {
+                            writers.execute(() -> viewer.flush(upTo));
+                        } else if (viewer.isStalled(now)) {
+                            System.out.println("Dropping score feed viewer " + viewer.exchange.getRemoteAddress() + " that stopped reading");
+                            viewers.remove(viewer);
+                            // Closing may itself block behind the stuck write, so keep it off this thread
+                            new DaemonThreadFactory("score-feed-close").newThread(viewer::close).start();
+                        }
+                    }
+                }
+                // Let changes build up a little, so a burst goes out as one event
+                Thread.sleep(MIN_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private byte[] event(String name, Map<String, Long> scores) throws IOException {
+        String data = JsonCodec.SCORES_WRITER.writeValueAsString(scores);
+        return ("event: " + name + "\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] readPage() {
+        try (InputStream in = ScoreFeed.class.getResourceAsStream("/web/scores.html")) {
+            if (in == null) return new byte[0];
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            return new byte[0];
+        }
+    }
+
+    private class Viewer {
+
+        final HttpExchange exchange;
+        final OutputStream out;
+        final AtomicBoolean flushing = new AtomicBoolean();
+        volatile long lastSent;
+        // Score each team was last sent with, or NOT_SENT; only touched by whoever holds flushing
+        long[] sentScores = new long[0];
+        volatile long writeStartedAt;
+
+        Viewer(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        /**
+         * Sends the new totals of every team changed since we last sent, up to the given change, or a heartbeat if
+         * there are none. A team changed again since the feed looked is left for next time, when it will be sent
+         * anyway; sending it now as well would send it twice. Runs on a writer thread.
+         */
+        void flush(long upTo) {
+            try {
+                AtomicLongArray current = changedAt;
+                Map<String, Long> scores = new LinkedHashMap<>();
+                long[] sending = new long[current.length()];
+                for (int teamId = 0; teamId < current.length(); teamId++) {
+                    long changeNumber = current.get(teamId);
+                    sending[teamId] = NOT_SENT;
+                    if (changeNumber > lastSent && changeNumber <= upTo) {
+                        // The score can already include a change not yet numbered, so may have been sent last time
+                        long score = scoreStore.get(teamId);
+                        if (teamId < sentScores.length && sentScores[teamId] == score) continue;
+                        scores.put(teamRegistry.nameOf(teamId), score);
+                        sending[teamId] = score;
+                    }
+                }
+                sent(sending);
+                write(scores.isEmpty() ? ": ping\n\n".getBytes(StandardCharsets.UTF_8) : event("scores", scores));
+                lastSent = upTo;
+            } catch (IOException e) {
+                close();
+            } finally {
+                flushing.set(false);
+            }
+        }
+
+        /**
+         * Remembers the scores sent, other than those given as NOT_SENT
+         */
+        void sent(long[] scores) {
+            if (scores.length > sentScores.length) {
+                long[] grown = Arrays.copyOf(sentScores, scores.length);
+                Arrays.fill(grown, sentScores.length, scores.length, NOT_SENT);
+                sentScores = grown;
+            }
+            for (int teamId = 0; teamId < scores.length; teamId++) {
+                if (scores[teamId] != NOT_SENT) sentScores[teamId] = scores[teamId];
+            }
+        }
+
+        void write(byte[] bytes) throws IOException {
+            writeStartedAt = System.currentTimeMillis();
+            try {
+                out.write(bytes);
+                out.flush();
+            } finally {
+                writeStartedAt = 0;
+            }
+        }
+
+        boolean isStalled(long now) {
+            long started = writeStartedAt;
+            return started != 0 && now - started > STALLED_WRITE_MS;
+        }
+
+        void close() {
+            viewers.remove(this);
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the saved team scores in a single streaming pass over the save file, straight into the score store.
+ * Every team in the file is registered, including any no longer on the roster, so their scores aren't lost.
+ */
+public class ScoreFileLoader {
+
+    private final TeamRegistry teamRegistry;
+    private final ScoreStore scoreStore;
+
+    public ScoreFileLoader(TeamRegistry teamRegistry, ScoreStore scoreStore) {
+        this.teamRegistry = teamRegistry;
+        this.scoreStore = scoreStore;
+    }
+
+    /**
+     * @return Number of team scores loaded; a missing or empty file loads nothing
+     */
+    public int load(Path file) throws IOException {
+        long start = System.nanoTime();
+        if (!Files.exists(file)) return 0;
+
+        List<String> names = new ArrayList<>();
+        List<Long> scores = new ArrayList<>();
+        try (JsonParser parser = JsonCodec.FACTORY.createParser(file.toFile())) {
+            JsonToken token = parser.nextToken();
+            if (token == null) return 0;
+            if (token != JsonToken.START_OBJECT) throw new IOException("Expected a JSON object of team name to score");
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                token = parser.nextToken();
+                if (token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT) {
+                    names.add(name);
+                    scores.add(parser.getValueAsLong());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+
+        teamRegistry.registerAll(names);
+        scoreStore.ensureCapacity(teamRegistry.size());
+        for (int i = 0; i < names.size(); i++) {
+            scoreStore.set(teamRegistry.idOf(names.get(i)), scores.get(i));
+        }
+
+        System.out.println(String.format("Loaded %d team scores from %s in %.1f ms",
+                names.size(), file.getFileName(), (System.nanoTime() - start) / 1_000_000.0));
+        return names.size();
+    }
+}
@@ -0,0 +1,345 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Append-only record of every score change: when it happened, where it came from, which team and by how much.
+ * <p>
+ * Changes are written one JSON object per line to the journal file by a background thread, which numbers
+ * them in the order written. Every so often the running totals are written to a snapshot file and the journal
+ * is rolled over: the current file is kept as a numbered segment (e.g. <tt>scoreJournal.0000010000.jsonl</tt>,
+ * numbered by its last change) and a new one is started, so that loading the scores only ever means reading the
+ * snapshot plus a short tail, while every change ever made stays on disk.
+ */
+public class ScoreJournal {
+
+    private static final Event CLOSE = new Event();
+
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final int snapshotEvery;
+    private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+    private final Map<String, Long> totals = new LinkedHashMap<>();
+    private long lastSeq;
+    private int eventsSinceSnapshot;
+    // Whether lastSeq has been read back from the files, by replay() or start()
+    private boolean loaded;
+    private FileChannel channel;
+    private volatile Thread writer;
+
+    /**
+     * @param snapshotEvery Number of changes to write to the journal before taking a new snapshot and rolling over
+     */
+    public ScoreJournal(Path journalFile, Path snapshotFile, int snapshotEvery) {
+        this.journalFile = journalFile;
+        this.snapshotFile = snapshotFile;
+        this.snapshotEvery = snapshotEvery;
+    }
+
+    /**
+     * @return Whether there is a snapshot or journal to load from, i.e. the journal has been used before
+     */
+    public boolean exists() {
+        return Files.exists(snapshotFile) || Files.exists(journalFile);
+    }
+
+    /**
+     * Rebuilds the scores from the newest snapshot plus any changes journalled after it. A change that was only
+     * partly written (because the application stopped mid-write) is ignored.
+     *
+     * @return Score of every team that has one, by name
+     */
+    public synchronized Map<String, Long> replay() throws IOException {
+        long start = System.nanoTime();
+        int replayed = load();
+        System.out.println(String.format("Loaded %d team scores from %s and %d changes from %s in %.1f ms",
+                totals.size(), snapshotFile.getFileName(), replayed, journalFile.getFileName(), (System.nanoTime() - start) / 1_000_000.0));
+        return new LinkedHashMap<>(totals);
+    }
+
+    /**
+     * Reads the snapshot and the changes journalled after it into the totals, and picks up the numbering where
+     * it left off
+     *
+     * @return Number of changes read from the journal
+     */
+    private int load() throws IOException {
+        totals.clear();
+        lastSeq = 0;
+        if (Files.exists(snapshotFile)) {
+            Snapshot snapshot = JsonCodec.JOURNAL_SNAPSHOT_READER.readValue(snapshotFile.toFile());
+            if (snapshot.getScores() != null) totals.putAll(snapshot.getScores());
+            lastSeq = snapshot.getSeq();
+        }
+
+        long snapshotSeq = lastSeq;
+        int replayed = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                Event event;
+                try {
+                    event = JsonCodec.JOURNAL_EVENT_READER.readValue(line);
+                } catch (IOException e) {
+                    System.out.println("Skipping unreadable score journal entry: " + line);
+                    continue;
+                }
+                // Entries already covered by the snapshot are left over from a roll over that didn't finish
+                if (event.getSeq() <= snapshotSeq) continue;
+                totals.merge(event.getTeam(), event.getDelta(), Long::sum);
+                lastSeq = Math.max(lastSeq, event.getSeq());
+                replayed++;
+            }
+        } catch (NoSuchFileException e) {
+            // Nothing since the snapshot
+        }
+        eventsSinceSnapshot = replayed;
+        loaded = true;
+        return replayed;
+    }
+
+    /**
+     * Starts accepting changes, on top of the given scores. Numbering carries on from the last change journalled,
+     * even if the scores were loaded from elsewhere (e.g. the mapped score file), so that new changes are never
+     * mistaken for ones already in the snapshot.
+     *
+     * @param scores Score of every team, as loaded by {@link #replay()} or from elsewhere
+     */
+    public synchronized void start(Map<String, Long> scores) throws IOException {
+        if (!loaded) {
+            try {
+                load();
+            } catch (IOException e) {
+                System.out.println("Failed to read score journal, numbering changes afresh: " + e.getMessage());
+            }
+        }
+        totals.clear();
+        totals.putAll(scores);
+        channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (!Files.exists(snapshotFile)) {
+            snapshot();
+        }
+        writer = new DaemonThreadFactory("score-journal").newThread(this::run);
+        writer.start();
+    }
+
+    /**
+     * Records a score change. Safe to call from any thread; the change is written in the background.
+     *
+     * @param source Where the change came from, e.g. "button" or the address of the device that sent it
+     */
+    public void append(String team, long delta, String source) {
+        if (writer == null) return;
+        queue.add(new Event(0, System.currentTimeMillis(), source, team, delta));
+    }
+
+    private void run() {
+        List<Event> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                boolean closing = batch.remove(CLOSE);
+                if (!batch.isEmpty()) write(batch);
+                batch.clear();
+                if (closing) return;
+            }
+        } catch (InterruptedException e) {
+            // Whatever is left is written by close()
+        }
+    }
+
+    private synchronized void write(List<Event> batch) {
+        if (channel == null) return;
+        try {
+            OutputStream out = Channels.newOutputStream(channel);
+            StringBuilder lines = new StringBuilder();
+            for (Event event : batch) {
+                event.setSeq(++lastSeq);
+                totals.merge(event.getTeam(), event.getDelta(), Long::sum);
+                lines.append(JsonCodec.JOURNAL_EVENT_WRITER.writeValueAsString(event)).append('\n');
+            }
+            out.write(lines.toString().getBytes(StandardCharsets.UTF_8));
+            channel.force(false);
+
+            eventsSinceSnapshot += batch.size();
+            if (eventsSinceSnapshot >= snapshotEvery) {
+                snapshot();
+                rollOver();
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to write to score journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the running totals as the new snapshot
+     */
+    private synchronized void snapshot() throws IOException {
+        AtomicFiles.write(snapshotFile, JsonCodec.JOURNAL_SNAPSHOT_WRITER.writeValueAsBytes(new Snapshot(lastSeq, totals)));
+        eventsSinceSnapshot = 0;
+    }
+
+    /**
+     * Keeps the journal written so far as a numbered segment and starts a new one. Called just after a snapshot;
+     * if we stop in between, the journal is simply replayed from after the snapshot's sequence number next time.
+     */
+    private synchronized void rollOver() throws IOException {
+        channel.close();
+        try {
+            Files.move(journalFile, segmentFile(lastSeq));
+        } finally {
+            // Carry on in the same file if it couldn't be moved, rather than stop journalling
+            channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * @return The file the journal is kept in once rolled over, e.g. <tt>scoreJournal.0000010000.jsonl</tt>
+     */
+    private Path segmentFile(long lastSeqInSegment) {
+        String name = journalFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        return journalFile.resolveSibling(String.format("%s.%010d%s", base, lastSeqInSegment, extension));
+    }
+
+    /**
+     * Writes out every outstanding change. The journal is left as it is, to be replayed on top of the last
+     * snapshot next time.
+     */
+    public void close() {
+        if (writer != null) {
+            queue.add(CLOSE);
+            try {
+                writer.join(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (channel == null) return;
+            List<Event> remaining = new ArrayList<>();
+            queue.drainTo(remaining);
+            remaining.remove(CLOSE);
+            if (!remaining.isEmpty()) write(remaining);
+            if (channel == null) return;
+            try {
+                channel.force(true);
+                channel.close();
+            } catch (IOException e) {
+                System.out.println("Failed to close score journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    public static class Event {
+        private long seq;
+        private long time;
+        private String source;
+        private String team;
+        private long delta;
+
+        public Event() {}
+
+        public Event(long seq, long time, String source, String team, long delta) {
+            this.seq = seq;
+            this.time = time;
+            this.source = source;
+            this.team = team;
+            this.delta = delta;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(long seq) {
+            this.seq = seq;
+        }
+
+        /**
+         * @return When the change was made, in milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        public void setTime(long time) {
+            this.time = time;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public void setSource(String source) {
+            this.source = source;
+        }
+
+        public String getTeam() {
+            return team;
+        }
+
+        public void setTeam(String team) {
+            this.team = team;
+        }
+
+        public long getDelta() {
+            return delta;
+        }
+
+        public void setDelta(long delta) {
+            this.delta = delta;
+        }
+    }
+
+    public static class Snapshot {
+        private long seq;
+        private Map<String, Long> scores;
+
+        public Snapshot() {}
+
+        public Snapshot(long seq, Map<String, Long> scores) {
+            this.seq = seq;
+            this.scores = scores;
+        }
+
+        /**
+         * @return Sequence number of the last change included in the scores
+         */
+        public long getSeq() {
+            return seq;
+        }
+
+        public void setSeq(long seq) {
+            this.seq = seq;
+        }
+
+        public Map<String, Long> getScores() {
+            return scores;
+        }
+
+        public void setScores(Map<String, Long> scores) {
+            this.scores = scores;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+/**
+ * Told about every score change applied by the {@link ScoreboardEngine}
+ */
+@FunctionalInterface
+public interface ScoreListener {
+
+    /**
+     * Called on the thread that applied the change, so must be quick
+     *
+     * @param teamId Id of the team whose score changed
+     * @param change Amount the score changed by
+     * @param score The team's score after the change
+     * @param source Where the change came from
+     */
+    void scoreChanged(int teamId, long change, long score, String source);
+}
@@ -0,0 +1,62 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind persistence of the team scores. Callers mark the scores as changed as often as they like;
+ * the latest scores are only fetched and written out at most once per flush interval (and on close).
+ */
+public class ScorePersister {
+
+    private final Path file;
+    private final Supplier<Map<String, Long>> scores;
+    private final LatencyHistogram writeTimes;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("score-persister"));
+
+    /**
+     * @param scores Supplies the score of every team by name, and is called on the writer thread
+     * @param writeTimes Records how long each write takes
+     */
+    public ScorePersister(Path file, long flushIntervalMs, Supplier<Map<String, Long>> scores, LatencyHistogram writeTimes) {
+        this.file = file;
+        this.scores = scores;
+        this.writeTimes = writeTimes;
+        executor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Marks the scores as needing to be saved
+     */
+    public void markDirty() {
+        dirty.set(true);
+    }
+
+    private synchronized void flush() {
+        if (!dirty.getAndSet(false)) return;
+        long start = System.nanoTime();
+        try {
+            AtomicFiles.write(file, JsonCodec.SCORES_WRITER.writeValueAsBytes(scores.get()));
+            writeTimes.recordSince(start);
+        } catch (IOException e) {
+            // Leave it to be retried next time
+            dirty.set(true);
+            System.out.println("Failed to write to file");
+        }
+    }
+
+    /**
+     * Stops the background writer, saving anything still outstanding first
+     */
+    public void close() {
+        executor.shutdown();
+        flush();
+    }
+}
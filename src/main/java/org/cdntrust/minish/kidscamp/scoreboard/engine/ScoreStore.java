@@ -0,0 +1,110 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The authoritative score of every team, indexed by team id.
+ * <p>
+ * Scores can be changed from any thread without locking. Anything displaying or saving the scores subscribes
+ * for a notification on each change, and reads the values back when it is ready to (e.g. once per frame),
+ * rather than being handed every individual change.
+ */
+public class ScoreStore {
+
+    private volatile AtomicLong[] scores;
+    private final AtomicLong version = new AtomicLong();
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public ScoreStore(int teamCount) {
+        scores = new AtomicLong[0];
+        ensureCapacity(teamCount);
+    }
+
+    /**
+     * Makes room for team ids up to (but not including) the given count. Existing scores are kept.
+     */
+    public synchronized void ensureCapacity(int teamCount) {
+        AtomicLong[] current = scores;
+        if (teamCount <= current.length) return;
+        AtomicLong[] grown = new AtomicLong[teamCount];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        for (int i = current.length; i < teamCount; i++) {
+            grown[i] = new AtomicLong();
+        }
+        scores = grown;
+    }
+
+    /**
+     * Adds to (or takes away from, if negative) the score of a team
+     *
+     * @return The team's new score
+     */
+    public long add(int teamId, long change) {
+        long score = scoreOf(teamId).addAndGet(change);
+        changed();
+        return score;
+    }
+
+    /**
+     * Replaces the score of a team, e.g. when loading saved scores
+     */
+    public void set(int teamId, long score) {
+        scoreOf(teamId).set(score);
+        changed();
+    }
+
+    /**
+     * @return The team's score, or 0 if there isn't room for it yet
+     */
+    public long get(int teamId) {
+        AtomicLong[] current = scores;
+        return teamId < current.length ? current[teamId].get() : 0;
+    }
+
+    /**
+     * Makes room for the team first if need be, in case its id was handed out before its score had room (a team
+     * registered on one thread can be changed on another before the registering thread gets to grow the store)
+     */
+    private AtomicLong scoreOf(int teamId) {
+        AtomicLong[] current = scores;
+        if (teamId < current.length) return current[teamId];
+        ensureCapacity(teamId + 1);
+        return scores[teamId];
+    }
+
+    /**
+     * Copies out the current score of every team
+     */
+    public long[] snapshot() {
+        AtomicLong[] current = scores;
+        long[] snapshot = new long[current.length];
+        for (int i = 0; i < current.length; i++) {
+            snapshot[i] = current[i].get();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Incremented on every change, so readers can cheaply tell whether anything has changed since they last looked
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Registers a listener to be run (on the thread making the change) after every change. Listeners must be quick,
+     * and should only schedule work rather than do it.
+     */
+    public void subscribe(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    private void changed() {
+        version.incrementAndGet();
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+}
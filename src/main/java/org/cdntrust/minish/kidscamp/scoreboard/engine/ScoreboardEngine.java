@@ -0,0 +1,404 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The scoreboard without any display: the teams and their scores, how the scores are saved, and how score changes
+ * come in over the network. Needs no JavaFX toolkit, so it can run on its own as a service, or in tests.
+ * <p>
+ * A display drives it through {@link #applyDelta}, {@link #snapshot} and {@link #subscribe}.
+ * <p>
+ * One engine leads, keeping the scores and streaming every change to any followers. A follower engine
+ * ({@link #follow}) just mirrors the leader's scores for display, and saves nothing itself.
+ */
+public class ScoreboardEngine {
+
+    public static final String SAVE_FILE_NAME = "teamScores.json";
+    public static final String MAPPED_SAVE_FILE_NAME = "teamScores.dat";
+    public static final String ROSTER_FILE_NAME = "roster.json";
+    public static final String CHANGES_FILE_NAME = "changesFromAPI.json";
+    public static final String CHANGES_SPOOL_DIR_NAME = "changes";
+    public static final String JOURNAL_FILE_NAME = "scoreJournal.jsonl";
+    public static final String JOURNAL_SNAPSHOT_FILE_NAME = "scoreSnapshot.json";
+
+    private static final int JOURNAL_SNAPSHOT_EVERY = 10000;
+    private static final long SCORE_FLUSH_INTERVAL_MS = 250;
+    private static final long SCORE_EXPORT_INTERVAL_MS = 30000;
+    private static final long DEDUP_WINDOW_MS = 10 * 60 * 1000;
+    private static final int DEDUP_MAX_IDS = 100000;
+
+    private final Path dataDir;
+    private final boolean mappedStorage;
+    private final TeamRegistry teamRegistry = new TeamRegistry();
+    private final ScoreStore scoreStore = new ScoreStore(0);
+    private final ScoreJournal scoreJournal;
+    private final List<ScoreListener> listeners = new CopyOnWriteArrayList<>();
+    private final ScoreboardMetrics metrics = new ScoreboardMetrics();
+    private final RequestDeduplicator deduplicator = new RequestDeduplicator(DEDUP_WINDOW_MS, DEDUP_MAX_IDS);
+    private ScorePersister scorePersister;
+    private MappedScoreFile mappedScoreFile;
+
+    private BooleanSupplier accepting = () -> false;
+    private ChangeSpool changeSpool;
+    private FileWatcher changesFileWatcher, changesSpoolWatcher;
+    private final ScheduledExecutorService ingestionExecutor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ingestion"));
+    // Batches claimed from the spool but turned away by the ingestion queue for now; only touched on the ingestion thread
+    private final Map<Path, DeltaBatch> deferredBatches = new LinkedHashMap<>();
+    private volatile IngestionLimits ingestionLimits = IngestionLimits.DEFAULTS;
+    private IngestionQueue ingestionQueue;
+    private final AtomicBoolean ingestionScheduled = new AtomicBoolean();
+    private ChangePointsServer changePointsServer;
+    private FanOutServer fanOutServer;
+    private ScoreFeed scoreFeed;
+    private FanOutClient fanOutClient;
+
+    /**
+     * @param dataDir Directory holding the score files and change spool
+     * @param mappedStorage Whether to keep the scores in the memory-mapped score file, rather than only as JSON
+     */
+    public ScoreboardEngine(Path dataDir, boolean mappedStorage) {
+        this.dataDir = dataDir;
+        this.mappedStorage = mappedStorage;
+        this.scoreJournal = new ScoreJournal(dataDir.resolve(JOURNAL_FILE_NAME), dataDir.resolve(JOURNAL_SNAPSHOT_FILE_NAME), JOURNAL_SNAPSHOT_EVERY);
+    }
+
+    public TeamRegistry getTeamRegistry() {
+        return teamRegistry;
+    }
+
+    public ScoreStore getScoreStore() {
+        return scoreStore;
+    }
+
+    /**
+     * Timings and counts of everything the engine does, plus the display's frame timings
+     */
+    public ScoreboardMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Loads the scores from the memory-mapped score file if that is in use, otherwise from the journal, or from the
+     * save file the first time the journal is used. Then starts journalling and saving changes.
+     */
+    public void start() {
+        metrics.register();
+        if (mappedStorage) {
+            mappedScoreFile = new MappedScoreFile(dataDir.resolve(MAPPED_SAVE_FILE_NAME), teamRegistry, scoreStore);
+        }
+        scorePersister = new ScorePersister(dataDir.resolve(SAVE_FILE_NAME), mappedStorage ? SCORE_EXPORT_INTERVAL_MS : SCORE_FLUSH_INTERVAL_MS, this::snapshot, metrics.persistLatency());
+
+        Map<String, Long> scores = null;
+        if (mappedScoreFile != null && mappedScoreFile.exists()) {
+            try {
+                scores = mappedScoreFile.load();
+            } catch (IOException e) {
+                System.out.println("Failed to read " + MAPPED_SAVE_FILE_NAME + ", falling back to the journal: " + e.getMessage());
+            }
+        }
+        try {
+            if (scores == null && scoreJournal.exists()) {
+                scores = scoreJournal.replay();
+            }
+            if (scores != null) {
+                teamRegistry.registerAll(new ArrayList<>(scores.keySet()));
+                scoreStore.ensureCapacity(teamRegistry.size());
+                scores.forEach((team, score) -> scoreStore.set(teamRegistry.idOf(team), score));
+            } else {
+                new ScoreFileLoader(teamRegistry, scoreStore).load(dataDir.resolve(SAVE_FILE_NAME));
+            }
+        } catch (IOException e) {
+            System.out.println("Failed to read file data: " + e.getMessage());
+        }
+
+        try {
+            scoreJournal.start(snapshot());
+        } catch (IOException e) {
+            System.out.println("Failed to open score journal, changes won't be journalled: " + e.getMessage());
+        }
+        if (mappedScoreFile != null) {
+            try {
+                mappedScoreFile.open();
+            } catch (IOException e) {
+                System.out.println("Failed to open " + MAPPED_SAVE_FILE_NAME + ", saving scores as JSON instead: " + e.getMessage());
+                mappedScoreFile = null;
+                scorePersister.close();
+                scorePersister = new ScorePersister(dataDir.resolve(SAVE_FILE_NAME), SCORE_FLUSH_INTERVAL_MS, this::snapshot, metrics.persistLatency());
+            }
+        }
+        ScorePersister persister = scorePersister;
+        scoreStore.subscribe(persister::markDirty);
+    }
+
+    /**
+     * Mirrors the scores of a leading scoreboard instead of keeping our own. Used instead of {@link #start()}.
+     *
+     * @param leaderAddress <tt>host</tt> or <tt>host:port</tt> of the leading scoreboard
+     * @throws IllegalArgumentException If the address can't be understood
+     */
+    public void follow(String leaderAddress) {
+        fanOutClient = new FanOutClient(leaderAddress, teamRegistry, scoreStore);
+        metrics.register();
+        metrics.setConnectedToLeader(fanOutClient::isConnected);
+        fanOutClient.start();
+    }
+
+    /**
+     * @return Whether this engine is mirroring another scoreboard rather than keeping its own scores
+     */
+    public boolean isFollower() {
+        return fanOutClient != null;
+    }
+
+    /**
+     * Registers a team, if it isn't already, and makes room for its score
+     *
+     * @return The id of the team
+     */
+    public int registerTeam(String name) {
+        // Room for the score first, so a change on another thread never finds the id without it
+        synchronized (teamRegistry) {
+            int teamId = teamRegistry.idOf(name);
+            if (teamId >= 0) return teamId;
+            scoreStore.ensureCapacity(teamRegistry.size() + 1);
+            return teamRegistry.register(name);
+        }
+    }
+
+    /**
+     * Changes the score of a team by name. Safe to call from any thread.
+     *
+     * @param change Amount to change the score by (can be negative to remove points)
+     * @param source Where the change came from, as recorded in the score journal
+     * @return Whether there is a team by that name
+     */
+    public boolean applyDelta(String team, long change, String source) {
+        int teamId = teamRegistry.idOf(team);
+        if (teamId < 0) {
+            metrics.deltaRejected();
+            return false;
+        }
+        applyDelta(teamId, change, source);
+        return true;
+    }
+
+    /**
+     * Changes the score of a team by id. Safe to call from any thread.
+     */
+    public void applyDelta(int teamId, long change, String source) {
+        long start = System.nanoTime();
+        long score = scoreStore.add(teamId, change);
+        if (mappedScoreFile != null) mappedScoreFile.write(teamId);
+        scoreJournal.append(teamRegistry.nameOf(teamId), change, source);
+        metrics.applyLatency().recordSince(start);
+        metrics.deltaApplied();
+        for (ScoreListener listener : listeners) {
+            listener.scoreChanged(teamId, change, score, source);
+        }
+    }
+
+    /**
+     * Copies out the current score of every team, by team name
+     */
+    public Map<String, Long> snapshot() {
+        long[] scores = scoreStore.snapshot();
+        List<String> names = teamRegistry.getNames();
+        Map<String, Long> scoresByTeam = new LinkedHashMap<>();
+        for (int i = 0; i < scores.length && i < names.size(); i++) {
+            scoresByTeam.put(names.get(i), scores[i]);
+        }
+        return scoresByTeam;
+    }
+
+    /**
+     * Registers a listener to be told about every score change applied
+     */
+    public void subscribe(ScoreListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets how many score changes are taken, and how fast, before they are turned away. Can be changed at any time.
+     */
+    public void setIngestionLimits(IngestionLimits limits) {
+        ingestionLimits = limits;
+        IngestionQueue queue = ingestionQueue;
+        if (queue != null) queue.setLimits(limits);
+    }
+
+    /**
+     * Starts taking score changes from the change spool and the /changepoints endpoint, through a bounded queue
+     *
+     * @param accepting Whether changes are currently being accepted; checked for each batch and request
+     */
+    public void startIngestion(BooleanSupplier accepting) {
+        this.accepting = accepting;
+        IngestionQueue queue = new IngestionQueue((changes, source) -> changes.forEach((team, change) -> applyDelta(team, change, source)),
+                ingestionLimits, metrics, deduplicator);
+        metrics.setIngestionQueueDepth(queue::getQueuedChanges);
+        ingestionQueue = queue;
+        // In case the limits were changed while the queue was being made
+        queue.setLimits(ingestionLimits);
+        try {
+            changeSpool = new ChangeSpool(dataDir.resolve(CHANGES_SPOOL_DIR_NAME), dataDir.resolve(CHANGES_FILE_NAME));
+            changesFileWatcher = new FileWatcher(dataDir.resolve(CHANGES_FILE_NAME), this::requestIngestion);
+            changesSpoolWatcher = new FileWatcher(changeSpool.getSpoolDir(), this::requestIngestion);
+            changesFileWatcher.start();
+            changesSpoolWatcher.start();
+        } catch (IOException e) {
+            System.out.println("Failed to create change spool directory");
+        }
+        startChangePointsServer();
+        startFanOutServer();
+    }
+
+    /**
+     * Serves score changes to follower displays. Like the /changepoints endpoint, carries on without if the port
+     * is taken.
+     */
+    private void startFanOutServer() {
+        FanOutServer server = new FanOutServer(teamRegistry, scoreStore);
+        try {
+            server.start(FanOutServer.DEFAULT_PORT);
+            fanOutServer = server;
+            subscribe(server);
+            metrics.setFollowers(server::getFollowerCount);
+        } catch (IOException e) {
+            System.out.println("Could not serve followers on port " + FanOutServer.DEFAULT_PORT + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hosts the /changepoints endpoint in-process. If the port is taken (e.g. by the old standalone web API) we carry
+     * on with just the file based handoff.
+     */
+    private void startChangePointsServer() {
+        ChangePointsServer server = new ChangePointsServer(this::isKnownTeam, ingestionQueue, accepting, metrics);
+        try {
+            server.start(ChangePointsServer.DEFAULT_PORT);
+            changePointsServer = server;
+
+            scoreFeed = new ScoreFeed(teamRegistry, scoreStore);
+            server.addHandler(ScoreFeed.PAGE_PATH, scoreFeed.pageHandler());
+            server.addHandler(ScoreFeed.STREAM_PATH, scoreFeed.streamHandler());
+            metrics.setFeedViewers(scoreFeed::getViewerCount);
+            subscribe(scoreFeed);
+        } catch (IOException e) {
+            System.out.println("Could not host " + ChangePointsServer.PATH + " on port " + ChangePointsServer.DEFAULT_PORT + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Whether the /changepoints endpoint is being hosted by this process
+     */
+    public boolean isHostingEndpoint() {
+        return changePointsServer != null;
+    }
+
+    /**
+     * Queues a check for new changes, unless one is already waiting to run (bursts of file events collapse into one)
+     */
+    public void requestIngestion() {
+        if (ingestionScheduled.compareAndSet(false, true)) {
+            ingestionExecutor.execute(this::handleScoreChangesFromFile);
+        }
+    }
+
+    /**
+     * Claims all change batches written by the API to receive network queries, and queues them to be applied.
+     * Runs on the ingestion thread; each batch is only released once its changes have been applied (one that fails
+     * is left claimed, and picked up again when the scoreboard next starts), and a batch resent with a request id
+     * that has already been applied is released without being applied again. Batches the queue turns away for now
+     * (too many changes lately, too many waiting, or one with the same request id not applied yet) are kept and
+     * offered again shortly.
+     */
+    private void handleScoreChangesFromFile() {
+        ingestionScheduled.set(false);
+        if (changeSpool == null || !accepting.getAsBoolean()) return;
+        Map<Path, DeltaBatch> parsedBatches = new LinkedHashMap<>(deferredBatches);
+        deferredBatches.clear();
+        List<Path> batches = new ArrayList<>(parsedBatches.keySet());
+        try {
+            batches.addAll(changeSpool.claimPending());
+        } catch (IOException e) {
+            System.out.println("Failed to claim score changes: " + e.getMessage());
+        }
+        if (changeSpool.isLegacyFileWaiting()) {
+            ingestionExecutor.schedule(this::requestIngestion, ChangeSpool.LEGACY_SETTLE_MS, TimeUnit.MILLISECONDS);
+        }
+        if (batches.isEmpty()) return;
+
+        long start = System.nanoTime();
+        for (int i = 0; i < batches.size(); i++) {
+            Path batch = batches.get(i);
+            DeltaBatch parsed = parsedBatches.get(batch);
+            if (parsed == null) {
+                try {
+                    parsed = DeltaParser.parseBatch(batch.toFile(), this::isKnownTeam);
+                    parsedBatches.put(batch, parsed);
+                } catch (IOException e) {
+                    System.out.println("Rejected unreadable score change batch " + batch.getFileName() + ": " + e.getMessage());
+                    metrics.deltaRejected();
+                    changeSpool.reject(batch);
+                    continue;
+                }
+            }
+
+            IngestionQueue.Admission admission = ingestionQueue.offer("file", parsed.getChanges(), parsed.getRequestId(),
+                    () -> changeSpool.complete(batch),
+                    () -> System.out.println("Left score change batch " + batch.getFileName() + " claimed, to be tried again on the next start"));
+            if (admission.isRetryable()) {
+                // Keep this and the rest, in order, until there is room
+                for (Path later : batches.subList(i, batches.size())) {
+                    deferredBatches.put(later, parsedBatches.get(later));
+                }
+                ingestionExecutor.schedule(this::requestIngestion, admission.getRetryAfterMs(), TimeUnit.MILLISECONDS);
+                break;
+            } else if (admission.getOutcome() == IngestionQueue.Outcome.TOO_LARGE) {
+                System.out.println("Rejected score change batch " + batch.getFileName() + " with too many changes");
+                changeSpool.reject(batch);
+            } else if (admission.getOutcome() == IngestionQueue.Outcome.DUPLICATE) {
+                changeSpool.complete(batch);
+            }
+        }
+        metrics.ingestionLatency().recordSince(start);
+    }
+
+    /**
+     * Whether changes for this team can be applied, counting any that can't as rejected
+     */
+    private boolean isKnownTeam(String team) {
+        if (teamRegistry.contains(team)) return true;
+        metrics.deltaRejected();
+        return false;
+    }
+
+    /**
+     * Stops taking changes and saves anything not yet written
+     */
+    public void close() {
+        if (fanOutClient != null) fanOutClient.close();
+        if (fanOutServer != null) fanOutServer.stop();
+        if (scoreFeed != null) scoreFeed.close();
+        if (changePointsServer != null) changePointsServer.stop();
+        if (changesFileWatcher != null) changesFileWatcher.close();
+        if (changesSpoolWatcher != null) changesSpoolWatcher.close();
+        ingestionExecutor.shutdown();
+        if (ingestionQueue != null) ingestionQueue.close();
+        scoreJournal.close();
+        if (mappedScoreFile != null) mappedScoreFile.close();
+        if (scorePersister != null) scorePersister.close();
+        metrics.unregister();
+    }
+}
@@ -0,0 +1,318 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Where the time goes between a score change arriving and it being on screen, so a lagging board can be narrowed
+ * down to polling, parsing, disk writes or chart layout. Everything is cheap enough to record all the time.
+ * <p>
+ * Shown over JMX as <tt>org.cdntrust.minish.kidscamp.scoreboard:type=Metrics</tt> once {@link #register()}ed.
+ */
+public class ScoreboardMetrics implements ScoreboardMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.cdntrust.minish.kidscamp.scoreboard:type=Metrics";
+
+    private final LatencyHistogram ingestionLatency = new LatencyHistogram();
+    private final LatencyHistogram applyLatency = new LatencyHistogram();
+    private final LatencyHistogram persistLatency = new LatencyHistogram();
+    private final LatencyHistogram chartUpdateTime = new LatencyHistogram();
+    private final LatencyHistogram layoutTime = new LatencyHistogram();
+    private final LatencyHistogram pulseInterval = new LatencyHistogram();
+    private final LongAdder deltasApplied = new LongAdder();
+    private final LongAdder deltasRejected = new LongAdder();
+    private final LongAdder deltasDropped = new LongAdder();
+    private final LongAdder duplicatesIgnored = new LongAdder();
+    private final LongAdder deltasTooLarge = new LongAdder();
+    private final LongAdder deltasRateLimited = new LongAdder();
+    private final LongAdder deltasShed = new LongAdder();
+    private volatile IntSupplier ingestionQueueDepth = () -> 0;
+    private volatile IntSupplier feedViewers = () -> 0;
+    private volatile IntSupplier followers = () -> 0;
+    // Null unless following another scoreboard
+    private volatile BooleanSupplier connectedToLeader;
+    private final StartupReport startup = new StartupReport();
+    private ObjectName registeredAs;
+
+    /**
+     * Time taken to claim, parse and apply one round of spooled change batches, or to handle one HTTP request
+     */
+    public LatencyHistogram ingestionLatency() {
+        return ingestionLatency;
+    }
+
+    /**
+     * Time taken to apply one change to the scores, mapped score file and journal queue
+     */
+    public LatencyHistogram applyLatency() {
+        return applyLatency;
+    }
+
+    /**
+     * Time taken to write out the scores file
+     */
+    public LatencyHistogram persistLatency() {
+        return persistLatency;
+    }
+
+    /**
+     * Time taken to push changed scores into the chart, once per frame
+     */
+    public LatencyHistogram chartUpdateTime() {
+        return chartUpdateTime;
+    }
+
+    /**
+     * Time JavaFX spends on CSS and layout in each pulse
+     */
+    public LatencyHistogram layoutTime() {
+        return layoutTime;
+    }
+
+    /**
+     * Time between pulses while the chart is being redrawn; anything well over the frame interval is a dropped frame
+     */
+    public LatencyHistogram pulseInterval() {
+        return pulseInterval;
+    }
+
+    /**
+     * Time taken by each phase of starting up
+     */
+    public StartupReport startup() {
+        return startup;
+    }
+
+    public void deltaApplied() {
+        deltasApplied.increment();
+    }
+
+    /**
+     * Counts a change that was thrown away, e.g. for a team that doesn't exist or in a batch that couldn't be read
+     */
+    public void deltaRejected() {
+        deltasRejected.increment();
+    }
+
+    /**
+     * Counts a change that was turned away because the scoreboard wasn't listening for network changes
+     */
+    public void deltaDropped() {
+        deltasDropped.increment();
+    }
+
+    /**
+     * Counts a batch of changes that had already been applied, i.e. was resent by the client
+     */
+    public void duplicateIgnored() {
+        duplicatesIgnored.increment();
+    }
+
+    /**
+     * Counts changes refused for being too big, or for being in a batch with too many changes
+     */
+    public void deltasTooLarge(int count) {
+        deltasTooLarge.add(count);
+    }
+
+    /**
+     * Counts changes turned away because their source was sending too many
+     */
+    public void deltasRateLimited(int count) {
+        deltasRateLimited.add(count);
+    }
+
+    /**
+     * Counts changes turned away because too many were already waiting to be applied
+     */
+    public void deltasShed(int count) {
+        deltasShed.add(count);
+    }
+
+    /**
+     * @param depth Supplies the number of changes waiting to be applied
+     */
+    public void setIngestionQueueDepth(IntSupplier depth) {
+        ingestionQueueDepth = depth;
+    }
+
+    /**
+     * @param viewers Supplies the number of browsers and phones following the live score feed
+     */
+    public void setFeedViewers(IntSupplier viewers) {
+        feedViewers = viewers;
+    }
+
+    /**
+     * @param followers Supplies the number of follower displays connected to this scoreboard
+     */
+    public void setFollowers(IntSupplier followers) {
+        this.followers = followers;
+    }
+
+    /**
+     * @param connected Supplies whether this scoreboard, as a follower, is connected to its leader
+     */
+    public void setConnectedToLeader(BooleanSupplier connected) {
+        connectedToLeader = connected;
+    }
+
+    @Override
+    public LatencySummary getIngestionLatency() {
+        return ingestionLatency.summarise();
+    }
+
+    @Override
+    public LatencySummary getApplyLatency() {
+        return applyLatency.summarise();
+    }
+
+    @Override
+    public LatencySummary getPersistLatency() {
+        return persistLatency.summarise();
+    }
+
+    @Override
+    public LatencySummary getChartUpdateTime() {
+        return chartUpdateTime.summarise();
+    }
+
+    @Override
+    public LatencySummary getLayoutTime() {
+        return layoutTime.summarise();
+    }
+
+    @Override
+    public LatencySummary getPulseInterval() {
+        return pulseInterval.summarise();
+    }
+
+    @Override
+    public long getDeltasApplied() {
+        return deltasApplied.sum();
+    }
+
+    @Override
+    public long getDeltasRejected() {
+        return deltasRejected.sum();
+    }
+
+    @Override
+    public long getDeltasDropped() {
+        return deltasDropped.sum();
+    }
+
+    @Override
+    public long getDuplicatesIgnored() {
+        return duplicatesIgnored.sum();
+    }
+
+    @Override
+    public long getDeltasTooLarge() {
+        return deltasTooLarge.sum();
+    }
+
+    @Override
+    public long getDeltasRateLimited() {
+        return deltasRateLimited.sum();
+    }
+
+    @Override
+    public long getDeltasShed() {
+        return deltasShed.sum();
+    }
+
+    @Override
+    public int getIngestionQueueDepth() {
+        return ingestionQueueDepth.getAsInt();
+    }
+
+    @Override
+    public int getFeedViewers() {
+        return feedViewers.getAsInt();
+    }
+
+    @Override
+    public int getFollowers() {
+        return followers.getAsInt();
+    }
+
+    @Override
+    public boolean isConnectedToLeader() {
+        BooleanSupplier connected = connectedToLeader;
+        return connected != null && connected.getAsBoolean();
+    }
+
+    @Override
+    public String getStartupReport() {
+        return startup.describe();
+    }
+
+    @Override
+    public void reset() {
+        ingestionLatency.reset();
+        applyLatency.reset();
+        persistLatency.reset();
+        chartUpdateTime.reset();
+        layoutTime.reset();
+        pulseInterval.reset();
+        deltasApplied.reset();
+        deltasRejected.reset();
+        deltasDropped.reset();
+        duplicatesIgnored.reset();
+        deltasTooLarge.reset();
+        deltasRateLimited.reset();
+        deltasShed.reset();
+    }
+
+    /**
+     * @return A few lines summarising everything, for showing on screen
+     */
+    public String describe() {
+        return "Ingestion  " + getIngestionLatency()
+                + "\nApply      " + getApplyLatency()
+                + "\nPersist    " + getPersistLatency()
+                + "\nChart      " + getChartUpdateTime()
+                + "\nLayout     " + getLayoutTime()
+                + "\nPulse gap  " + getPulseInterval()
+                + "\nDeltas     applied=" + getDeltasApplied() + " rejected=" + getDeltasRejected() + " dropped=" + getDeltasDropped()
+                + " duplicate batches=" + getDuplicatesIgnored()
+                + "\nRefused    too large=" + getDeltasTooLarge() + " rate limited=" + getDeltasRateLimited() + " shed=" + getDeltasShed()
+                + " queued=" + getIngestionQueueDepth()
+                + "\nNetwork    feed viewers=" + getFeedViewers() + " followers=" + getFollowers()
+                + (connectedToLeader == null ? "" : " leader=" + (isConnectedToLeader() ? "connected" : "lost"))
+                + "\nStartup    ready after " + startup.getReadyAfter() + "ms";
+    }
+
+    /**
+     * Makes the metrics visible over JMX. Failing to do so is only logged, as the scoreboard works fine without.
+     */
+    public synchronized void register() {
+        if (registeredAs != null) return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                registeredAs = name;
+            }
+        } catch (JMException e) {
+            System.out.println("Failed to register metrics with JMX: " + e.getMessage());
+        }
+    }
+
+    public synchronized void unregister() {
+        if (registeredAs == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredAs);
+        } catch (JMException e) {
+            // Already gone
+        }
+        registeredAs = null;
+    }
+}
@@ -0,0 +1,48 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+/**
+ * What {@link ScoreboardMetrics} shows over JMX, e.g. in JConsole or VisualVM
+ */
+public interface ScoreboardMetricsMXBean {
+
+    LatencySummary getIngestionLatency();
+
+    LatencySummary getApplyLatency();
+
+    LatencySummary getPersistLatency();
+
+    LatencySummary getChartUpdateTime();
+
+    LatencySummary getLayoutTime();
+
+    LatencySummary getPulseInterval();
+
+    long getDeltasApplied();
+
+    long getDeltasRejected();
+
+    long getDeltasDropped();
+
+    long getDuplicatesIgnored();
+
+    long getDeltasTooLarge();
+
+    long getDeltasRateLimited();
+
+    long getDeltasShed();
+
+    int getIngestionQueueDepth();
+
+    int getFeedViewers();
+
+    int getFollowers();
+
+    /**
+     * @return Whether this scoreboard is following another and is connected to it
+     */
+    boolean isConnectedToLeader();
+
+    String getStartupReport();
+
+    void reset();
+}
@@ -0,0 +1,79 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How long each phase of starting up took, counted from when the JVM started.
+ * <p>
+ * Startup is split into the phases that have to finish before the scores are shown, each {@link #mark(String)}ed
+ * as it ends, and work deferred until afterwards, which runs alongside and is timed on its own with
+ * {@link #recordSince(String, long)}.
+ */
+public class StartupReport {
+
+    private final long jvmStartedAt = ManagementFactory.getRuntimeMXBean().getStartTime();
+    // Guarded by this
+    private final List<String> lines = new ArrayList<>();
+    private long lastMark = jvmStartedAt;
+    private long readyAfter = -1;
+
+    /**
+     * Ends a phase that started when the last one ended (or when the JVM started, for the first)
+     */
+    public synchronized void mark(String phase) {
+        long now = System.currentTimeMillis();
+        lines.add(line(phase, now - lastMark));
+        lastMark = now;
+    }
+
+    /**
+     * Ends the last phase needed before the scores are shown, and prints the report so far
+     */
+    public void markReady(String phase) {
+        String report;
+        synchronized (this) {
+            mark(phase);
+            readyAfter = lastMark - jvmStartedAt;
+            report = describe();
+        }
+        System.out.println(report);
+    }
+
+    /**
+     * Records deferred work, which started at the given time and has just finished
+     *
+     * @param startedAt When the work started, from {@link System#currentTimeMillis()}
+     */
+    public void recordSince(String task, long startedAt) {
+        String line = line(task + " (deferred)", System.currentTimeMillis() - startedAt);
+        synchronized (this) {
+            lines.add(line);
+        }
+        System.out.println("Startup: " + line.trim());
+    }
+
+    /**
+     * @return Milliseconds from the JVM starting to the scores being shown, or -1 if they aren't yet
+     */
+    public synchronized long getReadyAfter() {
+        return readyAfter;
+    }
+
+    /**
+     * @return One line per phase, then the total time to being ready
+     */
+    public synchronized String describe() {
+        StringBuilder report = new StringBuilder("Startup:");
+        for (String line : lines) {
+            report.append('\n').append(line);
+        }
+        report.append('\n').append(readyAfter < 0 ? "  not ready yet" : "  ready after " + readyAfter + "ms");
+        return report.toString();
+    }
+
+    private static String line(String phase, long ms) {
+        return String.format("  %-34s %6dms", phase, ms);
+    }
+}
@@ -0,0 +1,82 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps team names to dense integer ids (0, 1, 2...) in the order they were registered, so that scores and
+ * display elements can be kept in arrays and looked up by name in constant time.
+ * Ids are never reused or removed. Lookups are safe from any thread.
+ */
+public class TeamRegistry {
+
+    private final Map<String, Integer> idsByName = new ConcurrentHashMap<>();
+    private volatile List<String> names = Collections.emptyList();
+
+    /**
+     * Registers a team, if it isn't already
+     *
+     * @return The id of the team
+     */
+    public synchronized int register(String name) {
+        Integer existing = idsByName.get(name);
+        if (existing != null) return existing;
+
+        List<String> grown = new ArrayList<>(names);
+        grown.add(name);
+        int id = grown.size() - 1;
+        names = Collections.unmodifiableList(grown);
+        idsByName.put(name, id);
+        return id;
+    }
+
+    /**
+     * Registers many teams at once, skipping any already registered. Cheaper than registering them one by one.
+     */
+    public synchronized void registerAll(List<String> teamNames) {
+        List<String> grown = new ArrayList<>(names);
+        Set<String> added = new HashSet<>();
+        for (String name : teamNames) {
+            if (!idsByName.containsKey(name) && added.add(name)) {
+                grown.add(name);
+            }
+        }
+        int firstNewId = names.size();
+        names = Collections.unmodifiableList(grown);
+        for (int id = firstNewId; id < grown.size(); id++) {
+            idsByName.put(grown.get(id), id);
+        }
+    }
+
+    /**
+     * @return The id of the team, or -1 if there is no team by that name
+     */
+    public int idOf(String name) {
+        Integer id = idsByName.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public boolean contains(String name) {
+        return idsByName.containsKey(name);
+    }
+
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @return Names of all teams, indexed by id
+     */
+    public List<String> getNames() {
+        return names;
+    }
+}
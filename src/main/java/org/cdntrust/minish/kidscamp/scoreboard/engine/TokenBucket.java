@@ -0,0 +1,49 @@
+package org.cdntrust.minish.kidscamp.scoreboard.engine;
+
+/**
+ * Lets through a steady number of score changes per second, plus short bursts of up to a second's worth. Not
+ * thread safe; {@link IngestionQueue} keeps one per source and only touches them while holding its lock.
+ */
+public class TokenBucket {
+
+    private final double perSecond;
+    private final double capacity;
+    private double tokens;
+    private long refilledAt;
+
+    /**
+     * @param perSecond How many changes to let through per second, on average
+     * @param capacity Most changes let through at once, after a quiet spell
+     */
+    public TokenBucket(double perSecond, double capacity) {
+        this.perSecond = perSecond;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.refilledAt = System.nanoTime();
+    }
+
+    /**
+     * Takes the tokens for some changes, if there are enough
+     *
+     * @return 0 if they were taken, otherwise how many milliseconds until there will be enough
+     */
+    public long tryTake(int count) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * perSecond / 1e9);
+        refilledAt = now;
+        if (count <= tokens) {
+            tokens -= count;
+            return 0;
+        }
+        // A batch bigger than the bucket can only go once it is full
+        double needed = Math.min(count, capacity) - tokens;
+        return Math.max(1, (long) Math.ceil(needed * 1000 / perSecond));
+    }
+
+    /**
+     * @return Whether the bucket has filled back up, i.e. the source has been quiet for a while
+     */
+    public boolean isFull() {
+        return tokens + (System.nanoTime() - refilledAt) * perSecond / 1e9 >= capacity;
+    }
+}